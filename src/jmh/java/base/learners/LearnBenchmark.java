@@ -0,0 +1,54 @@
+package base.learners;
+
+import base.Application;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full learning runs against the local countries fixture, without network nor database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LearnBenchmark {
+    // JMH splits the parameter values on commas, so the grouped examples are chosen by name.
+    private static final Map<String, String> EXAMPLES = Map.of(
+            "single", "+Cuba +Venezuela +Colombia -Malta -Love",
+            "grouped", "+<Fidel, Cuba> +<Leonardo, Italy>");
+
+    @Param({"single", "grouped"})
+    private String examples;
+
+    private ConfigurableApplicationContext context;
+    private QueryLearner queryLearner;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // the nodb profile of the tests runs over the fixture without database, the arguments take precedence over it
+        context = new SpringApplicationBuilder(Application.class)
+                .profiles("nodb")
+                .run("--logging.level.base=WARN");
+        queryLearner = context.getBean(QueryLearner.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public Optional<Set<String>> learn() throws ParseException, IOException {
+        return queryLearner.learn(EXAMPLES.get(examples));
+    }
+}
@@ -0,0 +1,88 @@
+package base.learners;
+
+import base.domain.Example;
+import base.domain.ExampleEntry;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the local stages of the learning over synthetic candidate triples: every example of a single component
+ * has the same amount of candidate triples, drawn from a shared pool of predicates.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryLearnerBenchmark {
+    private static final String RESOURCE = "http://example.org/resource/";
+    private static final String ONTOLOGY = "http://example.org/ontology/";
+
+    @Param({"3", "10"})
+    private int examples;
+    @Param({"100", "1000"})
+    private int triplesPerExample;
+
+    private Map<Example, Set<ExampleEntry<String, Triple>>> candidateTriples;
+    private Map<Integer, List<Example>> positiveExamplesByComponent;
+    private Set<Example> parsedExamples;
+    private Map<Example, List<ExampleEntry<String, Triple>>> commonTriples;
+    private QueryLearner queryLearner;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        int predicates = Math.max(1, triplesPerExample / 4);
+
+        candidateTriples = new HashMap<>();
+        List<Example> component = new ArrayList<>();
+        for (int i = 0; i < examples; i++) {
+            String label = RESOURCE + "e" + i;
+            Example example = new Example(i, label, Example.CATEGORY_POSITIVE, 0);
+            component.add(example);
+
+            Node subject = NodeFactory.createURI(label);
+            Set<ExampleEntry<String, Triple>> triples = new LinkedHashSet<>();
+            for (int j = 0; j < triplesPerExample; j++) {
+                Node predicate = NodeFactory.createURI(ONTOLOGY + "p" + random.nextInt(predicates));
+                Node object = NodeFactory.createURI(RESOURCE + "o" + random.nextInt(triplesPerExample * examples));
+                triples.add(new ExampleEntry<>(label, new Triple(subject, predicate, object)));
+            }
+            candidateTriples.put(example, triples);
+        }
+        positiveExamplesByComponent = Map.of(0, component);
+        parsedExamples = new HashSet<>(component);
+    }
+
+    // introduceVariables rewrites the triples in place, so every invocation gets its own copy.
+    @Setup(Level.Invocation)
+    public void copyCommonTriples() {
+        queryLearner = new QueryLearner();
+        commonTriples = new HashMap<>();
+        queryLearner.filterCommonTriples(candidateTriples, positiveExamplesByComponent).forEach((example, triples) -> {
+            List<ExampleEntry<String, Triple>> copy = new ArrayList<>();
+            triples.forEach(entry -> copy.add(new ExampleEntry<>(entry.getKey(), entry.getValue())));
+            commonTriples.put(example, copy);
+        });
+    }
+
+    @Benchmark
+    public Map<Example, List<ExampleEntry<String, Triple>>> filterCommonTriples() {
+        return new QueryLearner().filterCommonTriples(candidateTriples, positiveExamplesByComponent);
+    }
+
+    @Benchmark
+    public int introduceVariables() {
+        int selectedVariables = 0;
+        LearningSession session = new LearningSession(parsedExamples);
+        for (List<ExampleEntry<String, Triple>> triples : commonTriples.values())
+            selectedVariables += queryLearner.introduceVariables(triples, session);
+        return selectedVariables;
+    }
+}
@@ -0,0 +1,35 @@
+package base.utils;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the materialized and the lazy enumeration of all the combinations of n common triples.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CombinationsUtilBenchmark {
+    @Param({"10", "16", "19"})
+    private int n;
+
+    @Benchmark
+    @SuppressWarnings("deprecation")
+    public List<List<String>> generateCombinations() {
+        return CombinationsUtil.generateCombinations(n);
+    }
+
+    @Benchmark
+    public void combinations(Blackhole blackhole) {
+        PrimitiveIterator.OfLong combinations = CombinationsUtil.combinations(n, 1);
+        while (combinations.hasNext())
+            blackhole.consume(combinations.nextLong());
+    }
+}
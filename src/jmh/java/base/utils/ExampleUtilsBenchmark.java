@@ -0,0 +1,32 @@
+package base.utils;
+
+import base.domain.Example;
+import org.openjdk.jmh.annotations.*;
+
+import java.text.ParseException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExampleUtilsBenchmark {
+    private final ExampleUtils exampleUtils = new ExampleUtils();
+
+    // JMH splits the parameter values on commas, so the grouped examples are chosen by name.
+    private static final Map<String, String> EXAMPLES = Map.of(
+            "single", "+Cuba +Venezuela +Colombia -Malta -Love",
+            "grouped", "+<Fidel, Cuba, male> +<Leonardo, Italy, male> -<blue, plane, tree>");
+
+    @Param({"single", "grouped"})
+    private String examples;
+
+    @Benchmark
+    public Set<Example> parseExamples() throws ParseException {
+        return exampleUtils.parseExamples(EXAMPLES.get(examples));
+    }
+}
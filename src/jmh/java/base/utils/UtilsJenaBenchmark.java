@@ -0,0 +1,46 @@
+package base.utils;
+
+import base.domain.Example;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UtilsJenaBenchmark {
+    private final UtilsJena utilsJena = new UtilsJena();
+    private Triple triple;
+    private Set<Triple> pattern;
+    private Example example;
+
+    @Setup
+    public void setUp() {
+        triple = new Triple(NodeFactory.createURI("http://www.wikidata.org/entity/Q241"),
+                NodeFactory.createURI("http://www.wikidata.org/prop/direct/P31"),
+                NodeFactory.createURI("http://www.wikidata.org/entity/Q6256"));
+
+        pattern = new LinkedHashSet<>();
+        pattern.add(new Triple(NodeFactory.createVariable("x0"), NodeFactory.createURI("http://www.w3.org/2000/01/rdf-schema#label"), NodeFactory.createVariable("sv0")));
+        pattern.add(new Triple(NodeFactory.createVariable("x0"), NodeFactory.createURI("http://www.wikidata.org/prop/direct/P31"), NodeFactory.createVariable("x1")));
+        pattern.add(new Triple(NodeFactory.createVariable("x0"), NodeFactory.createURI("http://www.wikidata.org/prop/direct/P36"), NodeFactory.createVariable("x2")));
+        example = new Example(0, "Cuba", Example.CATEGORY_POSITIVE, 0);
+    }
+
+    @Benchmark
+    public String getSparqlCompatibleTriple() {
+        return utilsJena.getSparqlCompatibleTriple(triple);
+    }
+
+    @Benchmark
+    public String constructAskQuery() {
+        return utilsJena.constructAskQuery(pattern, example);
+    }
+}
@@ -0,0 +1,90 @@
+package base.backends;
+
+/**
+ * Limit of the queries in flight to an endpoint, adapted to its responses with AIMD: each query answered in time
+ * raises the limit by 1 / limit, so about one more query per round of queries, and a query rejected by the endpoint
+ * or answered too slowly cuts it by the backoff ratio.
+ *
+ * Only the queries started after the last cut can cut it again, otherwise a burst of failures of the queries that
+ * were already in flight would take the limit down to the minimum at once.
+ */
+class AdaptiveConcurrencyLimit {
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final long slowQueryNanos;
+
+    private double limit;
+    private int inFlight = 0;
+    private long lastCut = Long.MIN_VALUE;
+
+    /**
+     * @param slowQueryMillis the queries taking longer than this are taken as a sign of overload, 0 to disable it.
+     */
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio, long slowQueryMillis) {
+        if ((minLimit < 1) || (maxLimit < minLimit))
+            throw new IllegalArgumentException("The concurrency limit must be between 1 and the maximum limit.");
+        if ((backoffRatio <= 0) || (backoffRatio >= 1))
+            throw new IllegalArgumentException("The backoff ratio must be between 0 and 1.");
+
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.slowQueryNanos = slowQueryMillis * 1000000L;
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    }
+
+    /**
+     * Waits until a query can be sent.
+     *
+     * @return the start time of the query, to hand back when it finishes, or -1 if the time ran out.
+     */
+    synchronized long acquire(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (inFlight >= getLimit()) {
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0)
+                return -1;
+            wait(remaining);
+        }
+        inFlight++;
+        return System.nanoTime();
+    }
+
+    synchronized void onSuccess(long start) {
+        if ((slowQueryNanos > 0) && (System.nanoTime() - start > slowQueryNanos)) {
+            onOverload(start);
+            return;
+        }
+        limit = Math.min(maxLimit, limit + 1.0 / limit);
+        release();
+    }
+
+    synchronized void onOverload(long start) {
+        if (start > lastCut) {
+            limit = Math.max(minLimit, limit * backoffRatio);
+            lastCut = System.nanoTime();
+        }
+        release();
+    }
+
+    /**
+     * Releases a query whose outcome says nothing about the load of the endpoint.
+     */
+    synchronized void onIgnored() {
+        release();
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private void release() {
+        inFlight--;
+        notifyAll();
+    }
+}
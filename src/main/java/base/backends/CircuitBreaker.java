@@ -0,0 +1,72 @@
+package base.backends;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Stops sending queries to an endpoint after a run of consecutive failures. Once the open time is over a single
+ * trial query is let through, which closes the circuit if it succeeds and opens it again otherwise.
+ */
+class CircuitBreaker {
+    private final int failureThreshold;
+    private final long openNanos;
+    private final LongSupplier clock;
+
+    private int consecutiveFailures = 0;
+    private boolean open = false;
+    private long openedAt;
+    private boolean trialInFlight = false;
+
+    CircuitBreaker(int failureThreshold, long openMillis) {
+        this(failureThreshold, openMillis, System::nanoTime);
+    }
+
+    /**
+     * @param clock the current time, in nanoseconds.
+     */
+    CircuitBreaker(int failureThreshold, long openMillis, LongSupplier clock) {
+        if (failureThreshold < 1)
+            throw new IllegalArgumentException("The failure threshold must be greater than zero.");
+
+        this.failureThreshold = failureThreshold;
+        this.openNanos = openMillis * 1000000L;
+        this.clock = clock;
+    }
+
+    /**
+     * @return true if a query can be sent, in which case its outcome must be reported.
+     */
+    synchronized boolean tryAcquire() {
+        if (!open)
+            return true;
+        if ((trialInFlight) || (clock.getAsLong() - openedAt < openNanos))
+            return false;
+        trialInFlight = true;
+        return true;
+    }
+
+    synchronized void onSuccess() {
+        consecutiveFailures = 0;
+        open = false;
+        trialInFlight = false;
+    }
+
+    synchronized void onFailure() {
+        consecutiveFailures++;
+        if (trialInFlight || (consecutiveFailures >= failureThreshold)) {
+            open = true;
+            openedAt = clock.getAsLong();
+        }
+        trialInFlight = false;
+    }
+
+    /**
+     * Reports a query whose outcome says nothing about the health of the endpoint, e.g. a cancelled one.
+     */
+    synchronized void onIgnored() {
+        trialInFlight = false;
+    }
+
+    synchronized boolean isOpen() {
+        return open;
+    }
+}
@@ -0,0 +1,77 @@
+package base.backends;
+
+import base.services.QueryContext;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryExecutionFactory;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.system.Txn;
+import org.apache.jena.tdb2.TDB2Factory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the queries in process over a dump of the knowledge base (N-Triples, Turtle, N-Quads, TriG...), loaded in
+ * memory or in a TDB2 database. Named graphs in the dump can be selected with the sparqlear.sparql.datasets parameter.
+ */
+@Component
+@ConditionalOnProperty(name = "sparqlear.sparql.backend", havingValue = "local")
+public class LocalQueryBackend implements QueryBackend {
+    private final Logger logger = Logger.getLogger(LocalQueryBackend.class.getName());
+
+    @Value("${sparqlear.sparql.local.dump}")
+    private String dump;
+    @Value("${sparqlear.sparql.local.tdb2}")
+    private String tdb2Location;
+
+    private Dataset dataset;
+
+    @PostConstruct
+    private void init() {
+        if (tdb2Location.isEmpty())
+            dataset = DatasetFactory.createTxnMem();
+        else
+            dataset = TDB2Factory.connectDataset(tdb2Location);
+
+        boolean empty = Txn.calculateRead(dataset, () -> dataset.asDatasetGraph().isEmpty());
+        if (!dump.isEmpty() && empty) {
+            logger.log(Level.INFO, "Loading " + dump + "...");
+            Txn.executeWrite(dataset, () -> RDFDataMgr.read(dataset, dump));
+            logger.log(Level.INFO, "Knowledge base loaded.");
+        }
+    }
+
+    @Override
+    public <T> T execute(String query, Function<QueryExecution, T> handler) {
+        return Txn.calculateRead(dataset, () -> {
+            try (QueryExecution qexec = QueryExecutionFactory.create(query, dataset)) {
+                return QueryContext.execute(qexec, handler);
+            }
+        });
+    }
+
+    @Override
+    public String getName() {
+        return tdb2Location.isEmpty() ? "file:" + dump : "tdb2:" + tdb2Location;
+    }
+
+    @Override
+    public void validate() throws IOException {
+        if (dump.isEmpty() && tdb2Location.isEmpty())
+            throw new IOException("Please specify the dump or the TDB2 database to query.");
+    }
+
+    @PreDestroy
+    private void close() {
+        dataset.close();
+    }
+}
@@ -0,0 +1,33 @@
+package base.backends;
+
+import org.apache.jena.query.QueryExecution;
+
+import java.io.IOException;
+import java.util.function.Function;
+
+/**
+ * Executes the SPARQL queries issued while learning, either against a remote endpoint or a local copy of the
+ * knowledge base.
+ */
+public interface QueryBackend {
+    /**
+     * Runs a query and hands its execution to the handler, which must consume the results before returning.
+     *
+     * @param query   the SPARQL query.
+     * @param handler consumes the query execution and builds the result.
+     * @return the value built by the handler.
+     */
+    <T> T execute(String query, Function<QueryExecution, T> handler);
+
+    /**
+     * Identifies the knowledge base queried by this backend, e.g. to key cached results.
+     */
+    String getName();
+
+    /**
+     * Checks that the backend is correctly configured.
+     *
+     * @throws IOException if the backend can't be queried.
+     */
+    void validate() throws IOException;
+}
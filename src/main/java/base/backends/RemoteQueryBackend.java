@@ -0,0 +1,319 @@
+package base.backends;
+
+import base.services.MetricsService;
+import base.services.QueryContext;
+import org.apache.commons.validator.routines.UrlValidator;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponseInterceptor;
+import org.apache.http.entity.HttpEntityWrapper;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryFactory;
+import org.apache.jena.riot.WebContent;
+import org.apache.jena.sparql.engine.http.QueryEngineHTTP;
+import org.apache.jena.sparql.engine.http.QueryExceptionHTTP;
+import org.apache.jena.web.HttpSC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Sends the queries over HTTP to the SPARQL endpoint in sparqlear.sparql.endpoint.
+ *
+ * All the queries share a pool of persistent connections, so the TCP and TLS handshakes are only paid when the pool
+ * grows. The results are requested compressed and in the format configured in sparqlear.sparql.http.resultFormat.
+ *
+ * The queries in flight are bounded by a limit adapted to the responses of the endpoint. The queries rejected because
+ * the endpoint is overloaded are retried after a jittered exponential backoff, and after a run of failures the
+ * queries fail fast for a while instead of being sent.
+ */
+@Component
+@ConditionalOnProperty(name = "sparqlear.sparql.backend", havingValue = "remote", matchIfMissing = true)
+public class RemoteQueryBackend implements QueryBackend {
+    private final Logger logger = Logger.getLogger(RemoteQueryBackend.class.getName());
+    private static final long LIMIT_WAIT_MILLIS = 100;
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    @Value("${sparqlear.sparql.endpoint}")
+    private String endpoint;
+    @Value("${sparqlear.sparql.http.maxConnections}")
+    private int maxConnections;
+    @Value("${sparqlear.sparql.http.maxConnectionsPerHost}")
+    private int maxConnectionsPerHost;
+    @Value("${sparqlear.sparql.http.keepAliveSeconds}")
+    private long keepAliveSeconds;
+    @Value("${sparqlear.sparql.http.compression}")
+    private Boolean compression;
+    @Value("${sparqlear.sparql.http.resultFormat}")
+    private String resultFormat;
+    @Value("${sparqlear.sparql.limiter.initialLimit}")
+    private int initialLimit;
+    @Value("${sparqlear.sparql.limiter.minLimit}")
+    private int minLimit;
+    @Value("${sparqlear.sparql.limiter.maxLimit}")
+    private int maxLimit;
+    @Value("${sparqlear.sparql.limiter.backoffRatio}")
+    private double backoffRatio;
+    @Value("${sparqlear.sparql.limiter.slowQueryMillis}")
+    private long slowQueryMillis;
+    @Value("${sparqlear.sparql.retry.maxRetries}")
+    private int maxRetries;
+    @Value("${sparqlear.sparql.retry.baseDelayMillis}")
+    private long baseDelayMillis;
+    @Value("${sparqlear.sparql.retry.maxDelayMillis}")
+    private long maxDelayMillis;
+    @Value("${sparqlear.sparql.circuitBreaker.failureThreshold}")
+    private int failureThreshold;
+    @Value("${sparqlear.sparql.circuitBreaker.openMillis}")
+    private long openMillis;
+    @Resource
+    private MetricsService metricsService;
+
+    private CloseableHttpClient httpClient;
+    private String selectContentType;
+    private AdaptiveConcurrencyLimit concurrencyLimit;
+    private CircuitBreaker circuitBreaker;
+
+    @PostConstruct
+    private void init() {
+        selectContentType = selectContentType(resultFormat);
+        concurrencyLimit = new AdaptiveConcurrencyLimit(initialLimit, minLimit, maxLimit, backoffRatio, slowQueryMillis);
+        circuitBreaker = new CircuitBreaker(failureThreshold, openMillis);
+        metricsService.registerConcurrencyLimit(concurrencyLimit::getLimit);
+
+        PoolingHttpClientConnectionManager connectionManager = new PoolingHttpClientConnectionManager();
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnectionsPerHost);
+        connectionManager.setValidateAfterInactivity(1000);
+
+        HttpClientBuilder builder = HttpClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy((response, context) -> {
+                    // the endpoint may ask to close the idle connections sooner than configured
+                    long keepAlive = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+                    return (keepAlive > 0) ? Math.min(keepAlive, TimeUnit.SECONDS.toMillis(keepAliveSeconds)) : TimeUnit.SECONDS.toMillis(keepAliveSeconds);
+                })
+                .evictExpiredConnections()
+                .evictIdleConnections(keepAliveSeconds, TimeUnit.SECONDS)
+                // this is first so the bytes are counted as received, before they are decompressed
+                .addInterceptorFirst((HttpResponseInterceptor) (response, context) -> {
+                    if (null != response.getEntity())
+                        response.setEntity(new CountingEntity(response.getEntity()));
+                })
+                .useSystemProperties();
+        if (!compression)
+            builder.disableContentCompression();
+        httpClient = builder.build();
+        logger.log(Level.INFO, "HTTP client to " + endpoint + " created with up to " + maxConnections + " connections, " + maxConnectionsPerHost + " per host.");
+    }
+
+    @Override
+    public <T> T execute(String query, Function<QueryExecution, T> handler) {
+        for (int attempt = 0; ; attempt++) {
+            if (!circuitBreaker.tryAcquire()) {
+                metricsService.countRejectedQuery();
+                throw new QueryExceptionHTTP(HttpSC.SERVICE_UNAVAILABLE_503, "The queries are not sent to " + endpoint + " for a while after failing repeatedly.");
+            }
+
+            long start = 0;
+            boolean acquired = false;
+            // whether the outcome of the query was given to the limiter and the circuit breaker
+            boolean settled = false;
+            try {
+                start = acquire();
+                acquired = true;
+                T result = send(query, handler);
+                settled = true;
+                concurrencyLimit.onSuccess(start);
+                circuitBreaker.onSuccess();
+                return result;
+            } catch (RuntimeException e) {
+                if (!acquired)
+                    throw e;
+
+                settled = true;
+                boolean cancelled = (null != QueryContext.current()) && QueryContext.current().isCancelled();
+                if (cancelled) {
+                    concurrencyLimit.onIgnored();
+                    circuitBreaker.onIgnored();
+                } else if (isOverload(e)) {
+                    concurrencyLimit.onOverload(start);
+                    circuitBreaker.onFailure();
+                } else {
+                    // the endpoint answered, even if the query was wrong
+                    concurrencyLimit.onIgnored();
+                    circuitBreaker.onSuccess();
+                }
+
+                if (cancelled || (!isRetryable(e)) || (attempt >= maxRetries))
+                    throw e;
+                metricsService.countRetry();
+                backoff(attempt);
+            } finally {
+                // the query was not sent, or an Error was thrown: the slot and the trial granted go to another query
+                if (!settled) {
+                    if (acquired)
+                        concurrencyLimit.onIgnored();
+                    circuitBreaker.onIgnored();
+                }
+            }
+        }
+    }
+
+    private <T> T send(String query, Function<QueryExecution, T> handler) {
+        try (QueryEngineHTTP qexec = new QueryEngineHTTP(endpoint, QueryFactory.create(query), httpClient)) {
+            qexec.setSelectContentType(selectContentType);
+            qexec.setAllowCompression(compression);
+            return QueryContext.execute(qexec, handler);
+        }
+    }
+
+    // waits for the concurrency limit, giving up if the learning is cancelled meanwhile.
+    private long acquire() {
+        try {
+            long start;
+            do {
+                QueryContext.checkCancelled();
+                start = concurrencyLimit.acquire(LIMIT_WAIT_MILLIS);
+            } while (start < 0);
+            return start;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting to query " + endpoint + ".");
+        }
+    }
+
+    // full jitter: a random wait up to the exponential backoff of the attempt.
+    private void backoff(int attempt) {
+        long delay = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt, 30));
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(delay + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting to query " + endpoint + " again.");
+        }
+        QueryContext.checkCancelled();
+    }
+
+    /**
+     * @return true if the endpoint rejected the query because it is overloaded or unavailable, so it can be sent again later.
+     */
+    static boolean isRetryable(RuntimeException e) {
+        if (!(e instanceof QueryExceptionHTTP))
+            return false;
+        int statusCode = ((QueryExceptionHTTP) e).getStatusCode();
+        // the connection failed before the endpoint answered
+        if (statusCode < 100)
+            return (e.getCause() instanceof IOException) && !(e.getCause() instanceof SocketTimeoutException);
+        return (statusCode == TOO_MANY_REQUESTS) || (statusCode == HttpSC.BAD_GATEWAY_502)
+                || (statusCode == HttpSC.SERVICE_UNAVAILABLE_503) || (statusCode == HttpSC.GATEWAY_TIMEOUT_504);
+    }
+
+    /**
+     * @return true if the failure is a sign of an overloaded endpoint, which includes the queries timing out.
+     */
+    static boolean isOverload(RuntimeException e) {
+        return isRetryable(e) || ((e instanceof QueryExceptionHTTP) && (e.getCause() instanceof SocketTimeoutException));
+    }
+
+    @Override
+    public String getName() {
+        return endpoint;
+    }
+
+    @Override
+    public void validate() throws IOException {
+        if (!UrlValidator.getInstance().isValid(endpoint))
+            throw new IOException("Invalid endpoint");
+    }
+
+    @PreDestroy
+    private void close() throws IOException {
+        httpClient.close();
+    }
+
+    // the format of the SELECT results, which must be supported by the endpoint.
+    private static String selectContentType(String resultFormat) {
+        switch (resultFormat) {
+            case "json":
+                return WebContent.contentTypeResultsJSON;
+            case "xml":
+                return WebContent.contentTypeResultsXML;
+            case "tsv":
+                return WebContent.contentTypeTextTSV;
+            case "thrift":
+                return WebContent.contentTypeResultsThrift;
+            default:
+                throw new IllegalArgumentException("Unknown sparqlear.sparql.http.resultFormat: " + resultFormat + ", expected json, xml, tsv or thrift.");
+        }
+    }
+
+    /**
+     * Counts the bytes of a response body as they are read.
+     */
+    private class CountingEntity extends HttpEntityWrapper {
+        private CountingEntity(HttpEntity entity) {
+            super(entity);
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return new FilterInputStream(super.getContent()) {
+                // the bytes read so far, counted at the end of the stream or when it is closed
+                private long bytes;
+
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b >= 0)
+                        bytes++;
+                    else
+                        count();
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] buffer, int offset, int length) throws IOException {
+                    int read = super.read(buffer, offset, length);
+                    if (read > 0)
+                        bytes += read;
+                    else if (read < 0)
+                        count();
+                    return read;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        count();
+                    }
+                }
+
+                private void count() {
+                    if (bytes > 0)
+                        metricsService.countResponseBytes(bytes);
+                    bytes = 0;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package base.domain;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+
+import java.util.*;
+
+/**
+ * Set of candidate triples, each one paired with the example it was derived from, stored as four int columns over a
+ * {@link NodeDictionary}. The entries are deduplicated and get consecutive identifiers, and are only turned back into
+ * {@link ExampleEntry} objects once the crawl is over.
+ */
+public class EncodedEntries {
+    private static final int FREE = -1;
+    private static final int COLUMNS = 4;
+    private static final int KEY = 0, SUBJECT = 1, PREDICATE = 2, OBJECT = 3;
+
+    private final NodeDictionary dictionary;
+    private final Map<String, Integer> keyIds = new HashMap<>();
+    private final List<String> keys = new ArrayList<>();
+    private int[] columns;
+    private int size;
+    // linear probing table over the entry identifiers.
+    private int[] slots;
+
+    public EncodedEntries(NodeDictionary dictionary) {
+        this.dictionary = dictionary;
+        this.columns = new int[16 * COLUMNS];
+        this.slots = new int[32];
+        Arrays.fill(slots, FREE);
+    }
+
+    /**
+     * @return the identifier of the entry, which is assigned the first time the entry is added.
+     */
+    public int add(String key, Triple triple) {
+        int keyId = keyIds.computeIfAbsent(key, k -> {
+            keys.add(k);
+            return keys.size() - 1;
+        });
+        int subject = dictionary.encode(triple.getSubject());
+        int predicate = dictionary.encode(triple.getPredicate());
+        int object = dictionary.encode(triple.getObject());
+
+        int slot = slotOf(keyId, subject, predicate, object);
+        if (slots[slot] != FREE)
+            return slots[slot];
+
+        if ((size + 1) * COLUMNS > columns.length)
+            columns = Arrays.copyOf(columns, columns.length << 1);
+        int base = size * COLUMNS;
+        columns[base + KEY] = keyId;
+        columns[base + SUBJECT] = subject;
+        columns[base + PREDICATE] = predicate;
+        columns[base + OBJECT] = object;
+        slots[slot] = size;
+
+        if (++size * 2 > slots.length)
+            rehash();
+        return size - 1;
+    }
+
+    public String getKey(int id) {
+        return keys.get(columns[id * COLUMNS + KEY]);
+    }
+
+    public int getSubject(int id) {
+        return columns[id * COLUMNS + SUBJECT];
+    }
+
+    public int getPredicate(int id) {
+        return columns[id * COLUMNS + PREDICATE];
+    }
+
+    public int getObject(int id) {
+        return columns[id * COLUMNS + OBJECT];
+    }
+
+    public NodeDictionary getDictionary() {
+        return dictionary;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public ExampleEntry<String, Triple> toEntry(int id) {
+        Node subject = dictionary.decode(getSubject(id));
+        Node predicate = dictionary.decode(getPredicate(id));
+        Node object = dictionary.decode(getObject(id));
+        return new ExampleEntry<>(getKey(id), new Triple(subject, predicate, object));
+    }
+
+    /**
+     * @return the entries with the given identifiers, in the same order.
+     */
+    public Set<ExampleEntry<String, Triple>> toEntries(IntQueueSet ids) {
+        Set<ExampleEntry<String, Triple>> entries = new QueueSet<>();
+        ids.iterator().forEachRemaining((int id) -> entries.add(toEntry(id)));
+        return entries;
+    }
+
+    private int slotOf(int key, int subject, int predicate, int object) {
+        int mask = slots.length - 1;
+        int slot = hash(key, subject, predicate, object) & mask;
+        while (slots[slot] != FREE) {
+            int base = slots[slot] * COLUMNS;
+            if ((columns[base + KEY] == key) && (columns[base + SUBJECT] == subject) && (columns[base + PREDICATE] == predicate) && (columns[base + OBJECT] == object))
+                break;
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length << 1];
+        Arrays.fill(slots, FREE);
+        for (int id = 0; id < size; id++) {
+            int base = id * COLUMNS;
+            slots[slotOf(columns[base + KEY], columns[base + SUBJECT], columns[base + PREDICATE], columns[base + OBJECT])] = id;
+        }
+    }
+
+    private static int hash(int key, int subject, int predicate, int object) {
+        int h = ((key * 31 + subject) * 31 + predicate) * 31 + object;
+        h *= 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
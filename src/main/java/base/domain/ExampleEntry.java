@@ -1,6 +1,7 @@
 package base.domain;
 
 import java.util.Map;
+import java.util.Objects;
 
 public class ExampleEntry<K,V> implements Map.Entry<K,V> {
     private K key;
@@ -27,6 +28,25 @@ public class ExampleEntry<K,V> implements Map.Entry<K,V> {
         return value;
     }
 
+    /**
+     * Entries are equal when they have the same key and value, as required by {@link Map.Entry}. The value may change
+     * with {@link #setValue(Object)}, so an entry must not be modified while it belongs to a hashed collection.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof Map.Entry))
+            return false;
+        Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+        return Objects.equals(key, entry.getKey()) && Objects.equals(value, entry.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hashCode(key) ^ Objects.hashCode(value);
+    }
+
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder();
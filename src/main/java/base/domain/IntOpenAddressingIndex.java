@@ -0,0 +1,91 @@
+package base.domain;
+
+import java.util.Arrays;
+
+/**
+ * Set of non-negative ints in an open addressing table with linear probing, which indexes the values of
+ * {@link IntQueueSet} and {@link IntPriorityQueueSet} so they are found without allocating an object per value.
+ */
+final class IntOpenAddressingIndex {
+    private static final int FREE = -1;
+
+    private int[] slots;
+
+    /**
+     * @param capacity amount of slots, a power of two. The table is not grown by itself, so it must be kept larger
+     *                 than the amount of values.
+     */
+    IntOpenAddressingIndex(int capacity) {
+        slots = new int[capacity];
+        Arrays.fill(slots, FREE);
+    }
+
+    /**
+     * @return true if the value was not in the table.
+     */
+    boolean add(int value) {
+        int slot = slotOf(value);
+        if (slots[slot] == value)
+            return false;
+        slots[slot] = value;
+        return true;
+    }
+
+    boolean contains(int value) {
+        return (value >= 0) && (slots[slotOf(value)] == value);
+    }
+
+    void remove(int value) {
+        int slot = slotOf(value);
+        if (slots[slot] == value)
+            delete(slot);
+    }
+
+    void clear() {
+        Arrays.fill(slots, FREE);
+    }
+
+    /**
+     * Doubles the amount of slots, rehashing the values already in the table.
+     */
+    void grow() {
+        int[] values = slots;
+        slots = new int[values.length << 1];
+        Arrays.fill(slots, FREE);
+        for (int value : values)
+            if (value != FREE)
+                slots[slotOf(value)] = value;
+    }
+
+    // the slot holding the value, or the free slot where it would be stored.
+    private int slotOf(int value) {
+        int mask = slots.length - 1;
+        int slot = hash(value) & mask;
+        while ((slots[slot] != FREE) && (slots[slot] != value))
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    // backward shift deletion, so the probe sequences of the remaining values are not broken and no tombstone is left.
+    private void delete(int slot) {
+        int mask = slots.length - 1;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            if (slots[next] == FREE)
+                break;
+            int home = hash(slots[next]) & mask;
+            boolean reachable = (slot <= next) ? ((slot < home) && (home <= next)) : ((slot < home) || (home <= next));
+            if (!reachable) {
+                slots[slot] = slots[next];
+                slot = next;
+            }
+        }
+        slots[slot] = FREE;
+    }
+
+    private static int hash(int value) {
+        int h = value * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
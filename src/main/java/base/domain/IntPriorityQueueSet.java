@@ -0,0 +1,140 @@
+package base.domain;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * Set of non-negative ints polled by priority, highest first, and in insertion order among the same priority. The
+ * values are kept in a binary heap of primitives and indexed by an {@link IntOpenAddressingIndex}, as in
+ * {@link IntQueueSet}.
+ */
+public class IntPriorityQueueSet {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] values;
+    private float[] priorities;
+    // insertion order of the values, to break the ties between priorities.
+    private long[] sequences;
+    private int size;
+    private long nextSequence;
+    // with twice the capacity of the heap.
+    private final IntOpenAddressingIndex index;
+
+    public IntPriorityQueueSet() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntPriorityQueueSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, expectedSize - 1) << 1);
+        values = new int[capacity];
+        priorities = new float[capacity];
+        sequences = new long[capacity];
+        index = new IntOpenAddressingIndex(capacity << 1);
+    }
+
+    /**
+     * @return true if the value was not in the queue, otherwise it keeps its priority.
+     */
+    public boolean add(int value, float priority) {
+        if (value < 0)
+            throw new IllegalArgumentException("Only non-negative values can be queued, got " + value + ".");
+        if (Float.isNaN(priority))
+            throw new IllegalArgumentException("The priority of " + value + " is not a number.");
+
+        if (!index.add(value))
+            return false;
+
+        if (size == values.length)
+            grow();
+        values[size] = value;
+        priorities[size] = priority;
+        sequences[size] = nextSequence++;
+        siftUp(size++);
+        return true;
+    }
+
+    /**
+     * @return the value with the highest priority, which is removed from the queue.
+     */
+    public int poll() {
+        int value = peek();
+        size--;
+        if (size > 0) {
+            move(size, 0);
+            siftDown(0);
+        }
+        index.remove(value);
+        return value;
+    }
+
+    public int peek() {
+        if (0 == size)
+            throw new NoSuchElementException();
+        return values[0];
+    }
+
+    public boolean contains(int value) {
+        return index.contains(value);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return 0 == size;
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (!before(index, parent))
+                break;
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int first = index;
+            int left = (index << 1) + 1;
+            if ((left < size) && before(left, first))
+                first = left;
+            if ((left + 1 < size) && before(left + 1, first))
+                first = left + 1;
+            if (first == index)
+                break;
+            swap(index, first);
+            index = first;
+        }
+    }
+
+    private boolean before(int i, int j) {
+        return (priorities[i] > priorities[j]) || ((priorities[i] == priorities[j]) && (sequences[i] < sequences[j]));
+    }
+
+    private void swap(int i, int j) {
+        int value = values[i];
+        float priority = priorities[i];
+        long sequence = sequences[i];
+        move(j, i);
+        values[j] = value;
+        priorities[j] = priority;
+        sequences[j] = sequence;
+    }
+
+    private void move(int from, int to) {
+        values[to] = values[from];
+        priorities[to] = priorities[from];
+        sequences[to] = sequences[from];
+    }
+
+    private void grow() {
+        int capacity = values.length << 1;
+        values = Arrays.copyOf(values, capacity);
+        priorities = Arrays.copyOf(priorities, capacity);
+        sequences = Arrays.copyOf(sequences, capacity);
+        index.grow();
+    }
+}
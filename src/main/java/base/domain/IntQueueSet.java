@@ -0,0 +1,110 @@
+package base.domain;
+
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * {@link QueueSet} of non-negative ints, meant for the identifiers of interned nodes or triples. The elements are
+ * kept in a circular array and indexed by an {@link IntOpenAddressingIndex}, so no object is allocated per element.
+ */
+public class IntQueueSet {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private int[] queue;
+    private int head;
+    private int size;
+    // with twice the capacity of the queue.
+    private final IntOpenAddressingIndex index;
+
+    public IntQueueSet() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public IntQueueSet(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, expectedSize - 1) << 1);
+        queue = new int[capacity];
+        index = new IntOpenAddressingIndex(capacity << 1);
+    }
+
+    /**
+     * @return true if the value was not in the queue.
+     */
+    public boolean add(int value) {
+        if (value < 0)
+            throw new IllegalArgumentException("Only non-negative values can be queued, got " + value + ".");
+
+        if (!index.add(value))
+            return false;
+
+        if (size == queue.length)
+            grow();
+        queue[(head + size) & (queue.length - 1)] = value;
+        size++;
+        return true;
+    }
+
+    /**
+     * @return the oldest value in the queue, which is removed from it.
+     */
+    public int poll() {
+        int value = peek();
+        head = (head + 1) & (queue.length - 1);
+        size--;
+        index.remove(value);
+        return value;
+    }
+
+    public int peek() {
+        if (0 == size)
+            throw new NoSuchElementException();
+        return queue[head];
+    }
+
+    public boolean contains(int value) {
+        return index.contains(value);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return 0 == size;
+    }
+
+    public void clear() {
+        index.clear();
+        head = 0;
+        size = 0;
+    }
+
+    /**
+     * @return the values in the queue, in insertion order.
+     */
+    public PrimitiveIterator.OfInt iterator() {
+        return new PrimitiveIterator.OfInt() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public int nextInt() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                return queue[(head + next++) & (queue.length - 1)];
+            }
+        };
+    }
+
+    private void grow() {
+        int[] values = new int[queue.length << 1];
+        for (int i = 0; i < size; i++)
+            values[i] = queue[(head + i) & (queue.length - 1)];
+        queue = values;
+        head = 0;
+        index.grow();
+    }
+}
@@ -0,0 +1,27 @@
+package base.domain;
+
+/**
+ * Query learned from the examples, along with the information of its basic graph pattern.
+ */
+public class LearnedQuery {
+    private String query;
+    private double information;
+
+    public LearnedQuery(String query, double information) {
+        this.query = query;
+        this.information = information;
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public double getInformation() {
+        return information;
+    }
+
+    @Override
+    public String toString() {
+        return query + " (" + information + ")";
+    }
+}
@@ -0,0 +1,53 @@
+package base.domain;
+
+import base.utils.UtilsJena;
+import org.apache.jena.graph.Node;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns consecutive int identifiers to the nodes found while crawling the neighbourhood of an example, so each
+ * distinct node is stored and turned into its canonical label only once per run.
+ */
+public class NodeDictionary {
+    private final Map<Node, Integer> ids = new HashMap<>();
+    private final List<Node> nodes = new ArrayList<>();
+    private final List<String> canonicalLabels = new ArrayList<>();
+
+    /**
+     * @return the identifier of the node, which is assigned the first time the node is seen.
+     */
+    public int encode(Node node) {
+        Integer id = ids.get(node);
+        if (null == id) {
+            id = nodes.size();
+            ids.put(node, id);
+            nodes.add(node);
+            canonicalLabels.add(null);
+        }
+        return id;
+    }
+
+    public Node decode(int id) {
+        return nodes.get(id);
+    }
+
+    /**
+     * @return the label of the node as used to derive its triples, see {@link UtilsJena#getCanonicalExample(String)}.
+     */
+    public String getCanonicalLabel(int id) {
+        String label = canonicalLabels.get(id);
+        if (null == label) {
+            label = UtilsJena.getCanonicalExample(nodes.get(id).toString());
+            canonicalLabels.set(id, label);
+        }
+        return label;
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+}
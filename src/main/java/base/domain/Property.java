@@ -3,6 +3,7 @@ package base.domain;
 import javax.persistence.*;
 
 @Entity
+@Table(indexes = @Index(name = "property_label_key", columnList = "label", unique = true))
 public class Property {
     @Id
     @GeneratedValue(strategy = GenerationType.AUTO)
@@ -0,0 +1,297 @@
+package base.domain;
+
+import java.io.IOException;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * Read-only table of the weights of the ranked properties. The weights are stored in an open addressing table of
+ * primitives, so millions of properties take a few bytes each and the lookups allocate nothing. Once built, the table
+ * can be read from any thread without locking.
+ *
+ * The table is keyed by a 64-bit hash of the label, and the labels are kept UTF-8 encoded in a single array, so a
+ * lookup whose hash matches is verified against the whole label and colliding labels never get each other's weight.
+ *
+ * The same table can be written to a file and mapped back from it, without being rebuilt or copied in the heap.
+ */
+public class PropertyRank {
+    public static final PropertyRank EMPTY = new Builder().build();
+    private static final int FREE = -1;
+
+    private static final int MAGIC = 0x5350524B;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+
+    // the arrays are wrapped when the rank is built, and views of the file when it is mapped.
+    private final LongBuffer hashes;
+    // the entry stored in each slot, FREE for the free slots.
+    private final IntBuffer slots;
+    private final FloatBuffer weights;
+    // the label of the entry i is in labels[starts[i]] to labels[starts[i + 1] - 1].
+    private final IntBuffer starts;
+    private final ByteBuffer labels;
+
+    private PropertyRank(LongBuffer hashes, IntBuffer slots, FloatBuffer weights, IntBuffer starts, ByteBuffer labels) {
+        this.hashes = hashes;
+        this.slots = slots;
+        this.weights = weights;
+        this.starts = starts;
+        this.labels = labels;
+    }
+
+    /**
+     * Maps a rank written by {@link #write(Path)}. The file is read on demand by the lookups, so the rank is available
+     * at once whatever its size; it must not be modified while mapped.
+     */
+    public static PropertyRank map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE)
+                throw new IOException("The rank file " + file + " is larger than 2GB.");
+            if (channel.size() < HEADER_SIZE)
+                throw new IOException(file + " is not a rank file.");
+
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            if ((buffer.getInt(0) != MAGIC) || (buffer.getInt(4) != VERSION))
+                throw new IOException(file + " is not a rank file, or was written by another version.");
+            int capacity = buffer.getInt(8);
+            int size = buffer.getInt(12);
+            int labelsLength = buffer.getInt(16);
+            if (channel.size() != fileSize(capacity, size, labelsLength))
+                throw new IOException("The rank file " + file + " is truncated.");
+
+            int position = HEADER_SIZE;
+            LongBuffer hashes = slice(buffer, position, capacity * 8).asLongBuffer();
+            position += capacity * 8;
+            IntBuffer slots = slice(buffer, position, capacity * 4).asIntBuffer();
+            position += capacity * 4;
+            FloatBuffer weights = slice(buffer, position, size * 4).asFloatBuffer();
+            position += size * 4;
+            IntBuffer starts = slice(buffer, position, (size + 1) * 4).asIntBuffer();
+            position += (size + 1) * 4;
+            return new PropertyRank(hashes, slots, weights, starts, slice(buffer, position, labelsLength));
+        }
+    }
+
+    /**
+     * Writes the rank in a file that can be mapped back by {@link #map(Path)}. The file is replaced at once, so a
+     * rank mapped from it by another process is never seen half written.
+     */
+    public void write(Path file) throws IOException {
+        long fileSize = fileSize(slots.capacity(), size(), labels.capacity());
+        if (fileSize > Integer.MAX_VALUE)
+            throw new IOException("The rank takes more than 2GB, it can't be written in a single file.");
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) fileSize).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(slots.capacity()).putInt(size()).putInt(labels.capacity()).putInt(0);
+        for (int i = 0; i < hashes.capacity(); i++)
+            buffer.putLong(hashes.get(i));
+        for (int i = 0; i < slots.capacity(); i++)
+            buffer.putInt(slots.get(i));
+        for (int i = 0; i < weights.capacity(); i++)
+            buffer.putFloat(weights.get(i));
+        for (int i = 0; i < starts.capacity(); i++)
+            buffer.putInt(starts.get(i));
+        for (int i = 0; i < labels.capacity(); i++)
+            buffer.put(labels.get(i));
+        buffer.flip();
+
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining())
+                    channel.write(buffer);
+                channel.force(true);
+            }
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * @return the weight of the property, or NaN if it is not ranked.
+     */
+    public float getWeight(String label) {
+        long hash = hash(label);
+        int mask = slots.capacity() - 1;
+        for (int slot = slotOf(hash, mask); slots.get(slot) != FREE; slot = (slot + 1) & mask) {
+            if ((hashes.get(slot) == hash) && matches(label, slots.get(slot)))
+                return weights.get(slots.get(slot));
+        }
+        return Float.NaN;
+    }
+
+    public int size() {
+        return weights.capacity();
+    }
+
+    /**
+     * Hands each ranked property and its weight to the action, in the order they were added.
+     */
+    public void forEach(BiConsumer<String, Float> action) {
+        for (int entry = 0; entry < size(); entry++) {
+            byte[] label = new byte[starts.get(entry + 1) - starts.get(entry)];
+            for (int i = 0; i < label.length; i++)
+                label[i] = labels.get(starts.get(entry) + i);
+            action.accept(new String(label, StandardCharsets.UTF_8), weights.get(entry));
+        }
+    }
+
+    // compares the label with the UTF-8 bytes of the entry, encoding it on the fly.
+    private boolean matches(String label, int entry) {
+        int position = starts.get(entry);
+        int end = starts.get(entry + 1);
+        for (int i = 0; i < label.length(); i++) {
+            char c = label.charAt(i);
+            if (c < 0x80) {
+                if ((position >= end) || (labels.get(position++) != (byte) c))
+                    return false;
+            } else if (c < 0x800) {
+                if ((position + 2 > end) || (labels.get(position++) != (byte) (0xC0 | (c >> 6)))
+                        || (labels.get(position++) != (byte) (0x80 | (c & 0x3F))))
+                    return false;
+            } else if (Character.isHighSurrogate(c) && (i + 1 < label.length()) && Character.isLowSurrogate(label.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, label.charAt(++i));
+                if ((position + 4 > end) || (labels.get(position++) != (byte) (0xF0 | (codePoint >> 18)))
+                        || (labels.get(position++) != (byte) (0x80 | ((codePoint >> 12) & 0x3F)))
+                        || (labels.get(position++) != (byte) (0x80 | ((codePoint >> 6) & 0x3F)))
+                        || (labels.get(position++) != (byte) (0x80 | (codePoint & 0x3F))))
+                    return false;
+            } else if (Character.isSurrogate(c)) {
+                // the unpaired surrogates are encoded as '?', as String.getBytes does
+                if ((position >= end) || (labels.get(position++) != '?'))
+                    return false;
+            } else {
+                if ((position + 3 > end) || (labels.get(position++) != (byte) (0xE0 | (c >> 12)))
+                        || (labels.get(position++) != (byte) (0x80 | ((c >> 6) & 0x3F)))
+                        || (labels.get(position++) != (byte) (0x80 | (c & 0x3F))))
+                    return false;
+            }
+        }
+        return position == end;
+    }
+
+    // FNV-1a over the chars of the label, mixed so all the bits depend on every char.
+    static long hash(String label) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < label.length(); i++)
+            h = (h ^ label.charAt(i)) * 0x100000001B3L;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        return h ^ (h >>> 33);
+    }
+
+    private static int slotOf(long hash, int mask) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private static long fileSize(int capacity, int size, int labelsLength) {
+        return HEADER_SIZE + capacity * 12L + size * 4L + (size + 1) * 4L + labelsLength;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int position, int length) {
+        ByteBuffer duplicate = buffer.duplicate();
+        duplicate.position(position).limit(position + length);
+        return duplicate.slice().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Collects the ranked properties. When a property is added twice the last weight is kept.
+     */
+    public static class Builder {
+        private long[] hashes = new long[16];
+        private float[] weights = new float[16];
+        private int[] starts = new int[17];
+        private byte[] labels = new byte[1024];
+        private int count = 0;
+
+        public Builder add(String label, float weight) {
+            if (Float.isNaN(weight))
+                throw new IllegalArgumentException("The weight of " + label + " is not a number.");
+
+            byte[] bytes = label.getBytes(StandardCharsets.UTF_8);
+            if (count == weights.length) {
+                hashes = Arrays.copyOf(hashes, count << 1);
+                weights = Arrays.copyOf(weights, count << 1);
+                starts = Arrays.copyOf(starts, (count << 1) + 1);
+            }
+            int start = starts[count];
+            if (start + bytes.length > labels.length)
+                labels = Arrays.copyOf(labels, Math.max(labels.length << 1, start + bytes.length));
+            System.arraycopy(bytes, 0, labels, start, bytes.length);
+
+            hashes[count] = hash(label);
+            weights[count] = weight;
+            starts[count + 1] = start + bytes.length;
+            count++;
+            return this;
+        }
+
+        public PropertyRank build() {
+            // linear probing table at most half full, holding the position of the entries while they are added.
+            int capacity = Integer.highestOneBit(Math.max(16, count - 1) << 2);
+            int mask = capacity - 1;
+            int[] slots = new int[capacity];
+            Arrays.fill(slots, FREE);
+            for (int i = 0; i < count; i++) {
+                int slot = slotOf(hashes[i], mask);
+                while ((slots[slot] != FREE) && !sameLabel(slots[slot], i))
+                    slot = (slot + 1) & mask;
+                slots[slot] = i;
+            }
+
+            // the entries replaced by a later weight are dropped, the others are renumbered in the order they were added.
+            int[] kept = new int[count];
+            int size = 0;
+            for (int slot : slots) {
+                if (slot != FREE)
+                    kept[size++] = slot;
+            }
+            Arrays.sort(kept, 0, size);
+
+            int[] entries = new int[count];
+            long[] keptHashes = new long[capacity];
+            float[] keptWeights = new float[size];
+            int[] keptStarts = new int[size + 1];
+            byte[] keptLabels = new byte[labelsLength(kept, size)];
+            for (int entry = 0; entry < size; entry++) {
+                int i = kept[entry];
+                entries[i] = entry;
+                keptWeights[entry] = weights[i];
+                int length = starts[i + 1] - starts[i];
+                System.arraycopy(labels, starts[i], keptLabels, keptStarts[entry], length);
+                keptStarts[entry + 1] = keptStarts[entry] + length;
+            }
+            for (int slot = 0; slot < capacity; slot++) {
+                if (slots[slot] != FREE) {
+                    keptHashes[slot] = hashes[slots[slot]];
+                    slots[slot] = entries[slots[slot]];
+                }
+            }
+            return new PropertyRank(LongBuffer.wrap(keptHashes), IntBuffer.wrap(slots), FloatBuffer.wrap(keptWeights),
+                    IntBuffer.wrap(keptStarts), ByteBuffer.wrap(keptLabels));
+        }
+
+        private boolean sameLabel(int i, int j) {
+            return (hashes[i] == hashes[j]) && Arrays.equals(labels, starts[i], starts[i + 1], labels, starts[j], starts[j + 1]);
+        }
+
+        private int labelsLength(int[] kept, int size) {
+            int length = 0;
+            for (int entry = 0; entry < size; entry++)
+                length += starts[kept[entry] + 1] - starts[kept[entry]];
+            return length;
+        }
+    }
+}
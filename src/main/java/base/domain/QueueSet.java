@@ -2,25 +2,37 @@ package base.domain;
 
 import java.util.*;
 
+/**
+ * Queue without repeated elements. The elements are kept in a {@link LinkedHashSet}, so they are polled in insertion
+ * order and offer, poll, contains and remove take constant time.
+ */
 public class QueueSet<T> implements Set<T>, Queue<T> {
-    Queue<T> elements;
+    Set<T> elements;
 
     public QueueSet() {
-        elements = new LinkedList<>();
+        elements = new LinkedHashSet<>();
     }
 
     public T poll(){
-        return elements.poll();
+        if (elements.isEmpty())
+            return null;
+
+        Iterator<T> iterator = elements.iterator();
+        T head = iterator.next();
+        iterator.remove();
+        return head;
     }
 
     @Override
     public T element() {
-        return elements.element();
+        if (elements.isEmpty())
+            throw new NoSuchElementException();
+        return elements.iterator().next();
     }
 
     @Override
     public T peek() {
-        return elements.peek();
+        return elements.isEmpty() ? null : elements.iterator().next();
     }
 
     @Override
@@ -55,26 +67,24 @@ public class QueueSet<T> implements Set<T>, Queue<T> {
 
     @Override
     public boolean add(T t) {
-        if (!contains(t)) {
-            elements.add(t);
-            return true;
-        }
-        return false;
+        return elements.add(t);
     }
 
     @Override
     public boolean offer(T t) {
-        return false;
+        return elements.add(t);
     }
 
     @Override
     public T remove() {
-        return elements.remove();
+        T head = element();
+        elements.remove(head);
+        return head;
     }
 
     @Override
     public boolean remove(Object o) {
-        return false;
+        return elements.remove(o);
     }
 
     @Override
@@ -84,10 +94,7 @@ public class QueueSet<T> implements Set<T>, Queue<T> {
 
     @Override
     public boolean addAll(Collection<? extends T> c) {
-        for (T item : c)
-            if (!this.contains(item))
-                this.add(item);
-        return true;
+        return elements.addAll(c);
     }
 
     @Override
@@ -104,4 +111,19 @@ public class QueueSet<T> implements Set<T>, Queue<T> {
     public void clear() {
         elements.clear();
     }
+
+    @Override
+    public boolean equals(Object o) {
+        return (this == o) || elements.equals(o);
+    }
+
+    @Override
+    public int hashCode() {
+        return elements.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return elements.toString();
+    }
 }
@@ -0,0 +1,35 @@
+package base.learners;
+
+import java.time.Duration;
+
+/**
+ * Limits of a call to {@link QueryLearner#learnAsync(String, LearnOptions)}.
+ */
+public class LearnOptions {
+    private final Duration deadline;
+    private final Duration queryTimeout;
+
+    /**
+     * @param deadline     (Optional) time given to the whole learning, including the time waiting to start.
+     * @param queryTimeout (Optional) time given to each query sent while learning.
+     */
+    public LearnOptions(Duration deadline, Duration queryTimeout) {
+        this.deadline = deadline;
+        this.queryTimeout = queryTimeout;
+    }
+
+    /**
+     * Options without deadline, where the queries keep the timeout of the backend.
+     */
+    public static LearnOptions unlimited() {
+        return new LearnOptions(null, null);
+    }
+
+    public Duration getDeadline() {
+        return deadline;
+    }
+
+    public Duration getQueryTimeout() {
+        return queryTimeout;
+    }
+}
@@ -0,0 +1,79 @@
+package base.learners;
+
+import base.domain.Example;
+import base.utils.UtilsJena;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * State of a single call to {@link QueryLearner#learn(String)}: the parsed examples and the variables introduced
+ * in the common triples. The learner is a singleton shared by concurrent requests, so this state is created for
+ * every call instead of living in its fields.
+ *
+ * The session also holds the datasets its queries run over, which are none when the endpoint hosts a single one, and
+ * the crawls of the candidate triples of each example so they can be resumed.
+ */
+class LearningSession {
+    private final Set<Example> parsedExamples;
+    private final List<String> datasets;
+    private final Map<String, List<Triple>> triplesBySelectedVariable = new HashMap<>();
+    private final Map<String, Node> variableNames = new HashMap<>();
+    // this is concurrent because the datasets are crawled at the same time
+    private final Map<Map.Entry<Optional<String>, Example>, TripleCrawl> crawls = new ConcurrentHashMap<>();
+    private int svIndex = 0, nsvIndex = 0;
+
+    LearningSession(Set<Example> parsedExamples) {
+        this(parsedExamples, Collections.emptyList());
+    }
+
+    LearningSession(Set<Example> parsedExamples, List<String> datasets) {
+        this.parsedExamples = parsedExamples;
+        this.datasets = datasets;
+    }
+
+    Set<Example> getParsedExamples() {
+        return parsedExamples;
+    }
+
+    List<String> getDatasets() {
+        return datasets;
+    }
+
+    Map<String, List<Triple>> getTriplesBySelectedVariable() {
+        return triplesBySelectedVariable;
+    }
+
+    Map<String, Node> getVariableNames() {
+        return variableNames;
+    }
+
+    /**
+     * @return the crawl of the candidate triples of the example in the dataset, started the first time it is requested.
+     * The examples with the same value in different groups get their own crawls, as each one is asked for its triples.
+     */
+    TripleCrawl getCrawl(Example example, Optional<String> dataset) {
+        return crawls.computeIfAbsent(new AbstractMap.SimpleImmutableEntry<>(dataset, example), key -> new TripleCrawl(example.getExample(), dataset, 0));
+    }
+
+    Node newSelectedVariable() {
+        return NodeFactory.createVariable(UtilsJena.SELECTED_VARIABLE_PATTERN + svIndex++);
+    }
+
+    Node newVariable() {
+        return NodeFactory.createVariable("x" + nsvIndex++);
+    }
+
+    int getSelectedVariablesIntroduced() {
+        return svIndex;
+    }
+}
@@ -3,22 +3,31 @@ package base.learners;
 import base.domain.BasicGraphPattern;
 import base.domain.Example;
 import base.domain.ExampleEntry;
+import base.domain.LearnedQuery;
+import base.services.MetricsService;
 import base.services.PropertiesService;
+import base.services.QueryContext;
+import base.services.QueryExecutionService;
 import base.utils.CombinationsUtil;
 import base.utils.DatasetsParser;
 import base.utils.ExampleUtils;
 import base.utils.UtilsJena;
+import io.micrometer.core.instrument.Timer;
 import org.apache.jena.graph.Node;
-import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.graph.Triple;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -27,6 +36,8 @@ import java.util.stream.Collectors;
 @Lazy
 public class QueryLearner {
     private final Logger logger = Logger.getLogger(QueryLearner.class.getName());
+    private static final String SELECT_BEST_PATTERN = "best";
+    private static final String DATASETS_UNION = "union";
     @Resource
     private TripleFinder tripleFinder;
     @Resource
@@ -45,81 +56,310 @@ public class QueryLearner {
     private String resultsLimit;
     @Value("${sparqlear.sparql.datasets}")
     private String datasets;
+    @Value("${sparqlear.sparql.datasets.mode}")
+    private String datasetsMode;
     @Value("${sparqlear.verifyPredicatesRank}")
     private Boolean useRanking;
     @Value("${sparqlear.informationGain.threshold}")
     private double informationGainThreshold;
     @Value("${sparqlear.learnMultipleQueries}")
     private Boolean learnMultipleQueries;
+    @Value("${sparqlear.learnMultipleQueries.limit}")
+    private int multipleQueriesLimit;
+    @Value("${sparqlear.bgpSearch.parallelism}")
+    private int bgpSearchParallelism;
+    @Value("${sparqlear.bgpSearch.selection}")
+    private String bgpSearchSelection;
+    @Value("${sparqlear.bgpSearch.pruning}")
+    private Boolean bgpSearchPruning;
+    @Value("${sparqlear.tripleFinder.resumeCrawl}")
+    private Boolean resumeCrawl;
+    @Resource
+    private QueryExecutionService queryExecutionService;
+    @Resource
+    private MetricsService metricsService;
+    @Value("${sparqlear.learn.maxConcurrentLearns}")
+    private int maxConcurrentLearns;
+
+    // the learns run on their own threads, the query executor only runs the queries they send.
+    private ExecutorService learnExecutor;
+    // the parts of a learn running once per dataset, bounded by the learns and the datasets.
+    private ExecutorService datasetExecutor;
+
+    @PostConstruct
+    private void init() {
+        if (maxConcurrentLearns < 1)
+            throw new IllegalArgumentException("sparqlear.learn.maxConcurrentLearns must be greater than zero.");
+
+        AtomicInteger threadCount = new AtomicInteger();
+        learnExecutor = Executors.newFixedThreadPool(maxConcurrentLearns, runnable -> {
+            Thread thread = new Thread(runnable, "sparqlear-learn-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger datasetThreadCount = new AtomicInteger();
+        datasetExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "sparqlear-dataset-" + datasetThreadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        learnExecutor.shutdownNow();
+        datasetExecutor.shutdownNow();
+    }
+
+    /**
+     * Learns the queries in the background. The learns waiting for a thread count against their deadline.
+     *
+     * Cancelling the returned future, or reaching the deadline, aborts the queries in flight and stops the learning
+     * at its next step.
+     *
+     * @return a future completed with the learned queries, which are none if nothing could be learned.
+     */
+    public CompletableFuture<Set<String>> learnAsync(String examples, LearnOptions options) {
+        return learnAsync(examples, options, learnMultipleQueries, learnedQuery -> true);
+    }
+
+    /**
+     * Learns several queries in the background, publishing each one to the subscriber as soon as its pattern is
+     * verified. The search goes on until sparqlear.learnMultipleQueries.limit queries are found, the deadline is
+     * reached, or the subscriber cancels its subscription.
+     *
+     * @return a future completed with all the learned queries, once the subscriber was completed.
+     */
+    public CompletableFuture<Set<String>> learnAsync(String examples, LearnOptions options, Flow.Subscriber<? super LearnedQuery> subscriber) {
+        SubmissionPublisher<LearnedQuery> publisher = new SubmissionPublisher<>();
+        publisher.subscribe(subscriber);
+
+        CompletableFuture<Set<String>> future = learnAsync(examples, options, true, learnedQuery -> {
+            // the subscriber cancelled its subscription
+            if (!publisher.hasSubscribers())
+                return false;
+            publisher.submit(learnedQuery);
+            return true;
+        });
+        future.whenComplete((learnedQueries, e) -> {
+            if (null == e)
+                publisher.close();
+            else
+                publisher.closeExceptionally(e);
+        });
+        return future;
+    }
+
+    private CompletableFuture<Set<String>> learnAsync(String examples, LearnOptions options, boolean multipleQueries, Predicate<LearnedQuery> listener) {
+        QueryContext context = new QueryContext((null == options.getQueryTimeout()) ? 0 : options.getQueryTimeout().toMillis());
+        CompletableFuture<Set<String>> future = new CompletableFuture<>();
+        Future<?> learning;
+        try {
+            learning = learnExecutor.submit(() -> {
+                QueryContext previous = QueryContext.attach(context);
+                try {
+                    future.complete(learn(examples, multipleQueries, listener).orElse(Collections.emptySet()));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    QueryContext.attach(previous);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+            return future;
+        }
 
-    private int selectedVariablesAmount;
-    private Map<String, List<Triple>> triplesBySelectedVariable = new HashMap<>();
-    private Map<String, Node> variableNames = new HashMap<>();
-    private int svIndex = 0, nsvIndex = 0;
-    private Set<Example> parsedExamples;
+        if (null != options.getDeadline())
+            future.orTimeout(options.getDeadline().toMillis(), TimeUnit.MILLISECONDS);
+        future.whenComplete((learnedQueries, e) -> {
+            if (null != e) {
+                context.cancel();
+                learning.cancel(true);
+            }
+        });
+        return future;
+    }
 
     public Optional<Set<String>> learn(String examples) throws ParseException, IOException {
-        Set<String> derivedQueries = new HashSet<>();
-        Set<String> parsedDatasets = null;
+        return learn(examples, learnMultipleQueries, learnedQuery -> true);
+    }
 
+    /**
+     * @param multipleQueries keep searching for more queries after the first one, up to sparqlear.learnMultipleQueries.limit.
+     * @param listener        receives each learned query as soon as it is found, and returns false to stop the search.
+     */
+    private Optional<Set<String>> learn(String examples, boolean multipleQueries, Predicate<LearnedQuery> listener) throws ParseException, IOException {
         logger.log(Level.INFO, "Parsing examples...");
-        parsedExamples = exampleUtils.parseExamples(examples);
-        logger.log(Level.INFO, "Examples parsed.");
+        Timer.Sample stage = metricsService.startStage();
+        Set<Example> parsedExamples = exampleUtils.parseExamples(examples);
+        logger.log(Level.INFO, "Examples parsed in " + metricsService.stopStage(stage, MetricsService.STAGE_PARSE) + " ms.");
 
+        // this is sorted so the queries learned from several datasets come in the same order on every run
+        List<String> parsedDatasets = new ArrayList<>();
         if (!datasets.isEmpty()) {
             logger.log(Level.INFO, "Parsing datasets...");
-            parsedDatasets = datasetsParser.parse(datasets);
+            parsedDatasets.addAll(new TreeSet<>(datasetsParser.parse(datasets)));
             logger.log(Level.INFO, "Datasets parsed.");
         }
 
-        Map<Boolean, List<Example>> categorizedExamples = parsedExamples.stream()
+        if ((parsedDatasets.size() <= 1) || DATASETS_UNION.equals(datasetsMode)) {
+            Set<String> derivedQueries = new LinkedHashSet<>();
+            if (!learn(new LearningSession(parsedExamples, parsedDatasets), multipleQueries, derivedQueries, listener))
+                return Optional.empty();
+            return Optional.of(derivedQueries);
+        }
+
+        // the datasets are learned from at the same time, sharing the limit of learned queries.
+        AtomicInteger learnedQueries = new AtomicInteger();
+        Predicate<LearnedQuery> datasetListener = learnedQuery -> {
+            synchronized (learnedQueries) {
+                if (multipleQueries && (learnedQueries.get() >= multipleQueriesLimit))
+                    return false;
+                if (!listener.test(learnedQuery))
+                    return false;
+                learnedQueries.incrementAndGet();
+                return true;
+            }
+        };
+        List<Set<String>> datasetQueries = forEachDataset(parsedDatasets, dataset -> {
+            Set<String> derivedQueries = new LinkedHashSet<>();
+            if (!learn(new LearningSession(parsedExamples, Collections.singletonList(dataset)), multipleQueries, derivedQueries, datasetListener))
+                return null;
+            return derivedQueries;
+        });
+
+        Set<String> derivedQueries = null;
+        for (Set<String> queries : datasetQueries) {
+            if (null == queries)
+                continue;
+            if (null == derivedQueries)
+                derivedQueries = new LinkedHashSet<>();
+            derivedQueries.addAll(queries);
+        }
+        return Optional.ofNullable(derivedQueries);
+    }
+
+    /**
+     * Learns from the merge of the datasets of the session.
+     *
+     * @param derivedQueries receives the learned queries.
+     * @return false if some positive example is not present in the datasets.
+     */
+    private boolean learn(LearningSession session, boolean multipleQueries, Set<String> derivedQueries, Predicate<LearnedQuery> listener) throws IOException {
+        Map<Boolean, List<Example>> categorizedExamples = session.getParsedExamples().stream()
                 .collect(Collectors.groupingBy(Example::getCategory));
 
         Set<Example> positiveExamples = new HashSet<>(categorizedExamples.get(Example.CATEGORY_POSITIVE));
         Map<Integer, List<Example>> positiveExamplesByComponent = positiveExamples.stream().collect(Collectors.groupingBy(Example::getPosition));
-        Map<Example, Set<ExampleEntry<String, Triple>>> candidateTriples = deriveCandidateTriples(positiveExamplesByComponent, Optional.empty(), 0);
-        Map<Example, Set<ExampleEntry<String, Triple>>> commonTriples;
-
-        if (null == parsedDatasets) {
-            int i = 1;
-            do {
-                logger.log(Level.INFO, "Filtering common triples....");
-                commonTriples = filterCommonTriples(candidateTriples, positiveExamplesByComponent);
-                logger.log(Level.INFO, "Common triples filtered.");
-                Set<Example> commonTriplesKeySet = commonTriples.keySet();
-                for (Example example : commonTriplesKeySet) {
-                    selectedVariablesAmount += introduceVariables(commonTriples.get(example), parsedExamples, triplesBySelectedVariable);
-                }
-                if (selectedVariablesAmount < positiveExamplesByComponent.size()) {
-                    Map<Example, Set<ExampleEntry<String, Triple>>> moreCandidateTriples = deriveCandidateTriples(positiveExamplesByComponent, Optional.empty(), i * limit);
+        Timer.Sample stage = metricsService.startStage();
+        Map<Example, Set<ExampleEntry<String, Triple>>> candidateTriples = deriveCandidateTriples(session, positiveExamplesByComponent, 0);
+        logger.log(Level.INFO, "Candidate triples derived in " + metricsService.stopStage(stage, MetricsService.STAGE_DERIVATION) + " ms.");
+        if (null == candidateTriples)
+            return false;
+        Map<Example, List<ExampleEntry<String, Triple>>> commonTriples;
+
+        int selectedVariablesAmount = 0;
+        int i = 1;
+        do {
+            QueryContext.checkCancelled();
+            logger.log(Level.INFO, "Filtering common triples....");
+            stage = metricsService.startStage();
+            commonTriples = filterCommonTriples(candidateTriples, positiveExamplesByComponent);
+            logger.log(Level.INFO, "Common triples filtered in " + metricsService.stopStage(stage, MetricsService.STAGE_FILTERING) + " ms.");
+            stage = metricsService.startStage();
+            Set<Example> commonTriplesKeySet = commonTriples.keySet();
+            for (Example example : commonTriplesKeySet) {
+                selectedVariablesAmount += introduceVariables(commonTriples.get(example), session);
+            }
+            logger.log(Level.INFO, "Variables introduced in " + metricsService.stopStage(stage, MetricsService.STAGE_VARIABLES) + " ms.");
+            if (selectedVariablesAmount < positiveExamplesByComponent.size()) {
+                stage = metricsService.startStage();
+                Map<Example, Set<ExampleEntry<String, Triple>>> moreCandidateTriples = deriveCandidateTriples(session, positiveExamplesByComponent, i * limit);
+                logger.log(Level.INFO, "More candidate triples derived in " + metricsService.stopStage(stage, MetricsService.STAGE_DERIVATION) + " ms.");
+
+                if (null == moreCandidateTriples || moreCandidateTriples.isEmpty())
+                    return false;
+
+                candidateTriples.putAll(moreCandidateTriples);
+                i++;
+            }
+        } while (selectedVariablesAmount < positiveExamplesByComponent.size());
+
+        stage = metricsService.startStage();
+        if (multipleQueries) {
+            searchBasicGraphPatterns(session, commonTriples, categorizedExamples, positiveExamplesByComponent.size(), bgp -> {
+                LearnedQuery learnedQuery = new LearnedQuery(buildQuery(session, bgp), bgp.getInformation());
+                if (!listener.test(learnedQuery))
+                    return false;
+                derivedQueries.add(learnedQuery.getQuery());
+                return derivedQueries.size() < multipleQueriesLimit;
+            });
+        } else {
+            BasicGraphPattern bgp = constructBasicGraphPattern(session, commonTriples, categorizedExamples, positiveExamplesByComponent.size());
+            if (null != bgp) {
+                LearnedQuery learnedQuery = new LearnedQuery(buildQuery(session, bgp), bgp.getInformation());
+                if (listener.test(learnedQuery))
+                    derivedQueries.add(learnedQuery.getQuery());
+            }
+        }
+        logger.log(Level.INFO, "Basic graph pattern search finished in " + metricsService.stopStage(stage, MetricsService.STAGE_SEARCH) + " ms.");
+        return true;
+    }
 
-                    if (null == moreCandidateTriples || moreCandidateTriples.isEmpty())
-                        return Optional.empty();
+    /**
+     * A step of the learning run once per dataset.
+     */
+    interface DatasetTask<T> {
+        T run(String dataset) throws IOException;
+    }
 
-                    assert candidateTriples != null;
-                    candidateTriples.putAll(moreCandidateTriples);
-                    i++;
+    /**
+     * Runs a task per dataset at the same time, within the {@link QueryContext} of the caller. The tasks send and wait
+     * for their own queries, so they run on the dataset executor instead of the query one.
+     *
+     * @return the results of the tasks, in the same order as the datasets.
+     */
+    private <T> List<T> forEachDataset(List<String> datasets, DatasetTask<T> task) throws IOException {
+        QueryContext context = QueryContext.current();
+        List<Callable<T>> tasks = new ArrayList<>(datasets.size());
+        for (String dataset : datasets) {
+            tasks.add(() -> {
+                QueryContext previous = QueryContext.attach(context);
+                try {
+                    return task.run(dataset);
+                } finally {
+                    QueryContext.attach(previous);
                 }
-            } while (selectedVariablesAmount < positiveExamplesByComponent.size());
+            });
+        }
 
-            BasicGraphPattern bgp = constructBasicGraphPattern(commonTriples, categorizedExamples, positiveExamplesByComponent.size());
-            if (null != bgp)
-                derivedQueries.add(buildQuery(bgp));
-        } else {
-            // TODO: Create the flow for learning from multiple datasets.
+        List<T> results = new ArrayList<>(datasets.size());
+        try {
+            for (Future<T> result : datasetExecutor.invokeAll(tasks))
+                results.add(result.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("The learning was interrupted.");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException)
+                throw (IOException) e.getCause();
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new IllegalStateException(e.getCause());
         }
-        return Optional.of(derivedQueries);
+        return results;
     }
 
-    private String buildQuery(BasicGraphPattern bgp) {
+    private String buildQuery(LearningSession session, BasicGraphPattern bgp) {
         StringBuilder stringBuilder = new StringBuilder();
         stringBuilder.append("SELECT DISTINCT ");
 
         Set<String> selectedVariables = new HashSet<>();
         for (Triple triple : bgp.getTriples()) {
-            if (triple.getSubject().toString().contains(UtilsJena.SELECTED_VARIABLE_PATTERN))
+            if (UtilsJena.isSelectedVariable(triple.getSubject()))
                 selectedVariables.add(triple.getSubject().toString());
-            if (triple.getObject().toString().contains(UtilsJena.SELECTED_VARIABLE_PATTERN))
+            if (UtilsJena.isSelectedVariable(triple.getObject()))
                 selectedVariables.add(triple.getObject().toString());
         }
         List<String> selectedVariablesSorted = new ArrayList<>(selectedVariables);
@@ -128,6 +368,7 @@ public class QueryLearner {
             stringBuilder.append(sv).append(" ");
         }
 
+        stringBuilder.append(UtilsJena.fromClauses(session.getDatasets()));
         stringBuilder.append("WHERE { ");
         for (Triple triple : bgp.getTriples()) {
             stringBuilder.append(utilsJena.getSparqlCompatibleTriple(triple)).append(" . ");
@@ -137,75 +378,251 @@ public class QueryLearner {
         return stringBuilder.toString();
     }
 
-    private BasicGraphPattern constructBasicGraphPattern(Map<Example, Set<ExampleEntry<String, Triple>>> commonTriples, Map<Boolean, List<Example>> categorizedExamples, int numberOfSelectedVariables) {
+    private BasicGraphPattern constructBasicGraphPattern(LearningSession session, Map<Example, List<ExampleEntry<String, Triple>>> commonTriples, Map<Boolean, List<Example>> categorizedExamples, int numberOfSelectedVariables) {
+        // keeps the first accepted pattern, or the one with the highest information among the smallest ones when the best pattern is requested.
+        BasicGraphPattern[] selected = new BasicGraphPattern[1];
+        searchBasicGraphPatterns(session, commonTriples, categorizedExamples, numberOfSelectedVariables, new PatternConsumer() {
+            @Override
+            public boolean accept(BasicGraphPattern bgp) {
+                if ((null == selected[0]) || (bgp.getInformation() > selected[0].getInformation()))
+                    selected[0] = bgp;
+                return SELECT_BEST_PATTERN.equals(bgpSearchSelection);
+            }
+
+            @Override
+            public boolean sizeCompleted() {
+                return null == selected[0];
+            }
+        });
+        return selected[0];
+    }
+
+    /**
+     * Receives the patterns accepted while searching.
+     */
+    interface PatternConsumer {
+        /**
+         * @return false to stop the search.
+         */
+        boolean accept(BasicGraphPattern bgp);
+
+        /**
+         * Called once all the patterns with the same amount of triples were verified.
+         *
+         * @return false to stop the search.
+         */
+        default boolean sizeCompleted() {
+            return true;
+        }
+    }
+
+    /**
+     * Verifies the combinations of common triples by increasing size, handing the accepted patterns to the consumer in
+     * the order they are enumerated. The combinations including an accepted one are not verified, they only restrict
+     * an answer already found.
+     */
+    private void searchBasicGraphPatterns(LearningSession session, Map<Example, List<ExampleEntry<String, Triple>>> commonTriples, Map<Boolean, List<Example>> categorizedExamples, int numberOfSelectedVariables, PatternConsumer consumer) {
         List<ExampleEntry<String, Triple>> allCommonTriples = new LinkedList<>();
 
-        for (Map.Entry<Example, Set<ExampleEntry<String, Triple>>> entry : commonTriples.entrySet()) {
+        for (Map.Entry<Example, List<ExampleEntry<String, Triple>>> entry : commonTriples.entrySet()) {
             allCommonTriples.addAll(entry.getValue());
         }
 
+        // this is a stable sort, the triples with selected variables come first
         allCommonTriples = allCommonTriples.stream()
-                .sorted((e1, e2) -> {
-                    if (e1.getValue().toString().contains(UtilsJena.SELECTED_VARIABLE_PATTERN) && !e2.getValue().toString().contains(UtilsJena.SELECTED_VARIABLE_PATTERN))
-                        return -1;
-                    else if (!e1.getValue().toString().contains(UtilsJena.SELECTED_VARIABLE_PATTERN) && e2.getValue().toString().contains(UtilsJena.SELECTED_VARIABLE_PATTERN))
-                        return 1;
-                    else
-                        return 0;
-                })
+                .sorted(Comparator.comparing((ExampleEntry<String, Triple> e) -> !hasSelectedVariable(e.getValue())))
                 .collect(Collectors.toList());
 
-        List<List<String>> combinationIndexes = CombinationsUtil.generateCombinations(allCommonTriples.size());
-        for (List<String> rowCombinationIndexes : combinationIndexes) {
-            for (String combination : rowCombinationIndexes) {
-                String[] stringIndexes = combination.split(" ");
-                // this is to avoid testing combinations that have a low possibility of being successful
-                if (stringIndexes.length < numberOfSelectedVariables)
-                    continue;
-
-                Set<Node> selectedVariablesIncluded = new HashSet<>();
+        if (allCommonTriples.size() > CombinationsUtil.MAX_ELEMENTS) {
+            logger.log(Level.WARNING, "Only the first " + CombinationsUtil.MAX_ELEMENTS + " of " + allCommonTriples.size() + " common triples will be combined.");
+            allCommonTriples = allCommonTriples.subList(0, CombinationsUtil.MAX_ELEMENTS);
+        }
 
-                List<Integer> indexes = new ArrayList<>();
-                for (String stringIndex : stringIndexes) {
-                    indexes.add(Integer.valueOf(stringIndex));
+        List<Example> examples = new ArrayList<>();
+        if (null != categorizedExamples.get(Example.CATEGORY_POSITIVE))
+            examples.addAll(categorizedExamples.get(Example.CATEGORY_POSITIVE));
+        if (null != categorizedExamples.get(Example.CATEGORY_NEGATIVE))
+            examples.addAll(categorizedExamples.get(Example.CATEGORY_NEGATIVE));
+        SubsumptionPruner pruner = bgpSearchPruning ? new SubsumptionPruner(examples) : null;
+
+        // this is to avoid testing combinations that have a low possibility of being successful
+        PrimitiveIterator.OfLong combinations = CombinationsUtil.combinations(allCommonTriples.size(), numberOfSelectedVariables);
+        List<Long> acceptedCombinations = new ArrayList<>();
+        List<Long> windowCombinations = new ArrayList<>();
+        List<BasicGraphPattern> window = new ArrayList<>();
+        int level = numberOfSelectedVariables;
+        try {
+            while (combinations.hasNext()) {
+                QueryContext.checkCancelled();
+                long combination = combinations.nextLong();
+
+                // the windows never mix sizes, so the pruner knows all the subsets of a combination.
+                if (CombinationsUtil.size(combination) != level) {
+                    if (!consume(evaluatePatterns(session, windowCombinations, window, examples, pruner), acceptedCombinations, consumer) || !consumer.sizeCompleted())
+                        return;
+                    windowCombinations.clear();
+                    window.clear();
+                    level = CombinationsUtil.size(combination);
                 }
-                BasicGraphPattern bgp = new BasicGraphPattern();
-                for (Integer index : indexes) {
-                    Triple triple = allCommonTriples.get(index).getValue();
-
-                    if (triple.getSubject().toString().contains(UtilsJena.SELECTED_VARIABLE_PATTERN))
-                        selectedVariablesIncluded.add(triple.getSubject());
-                    if (triple.getObject().toString().contains(UtilsJena.SELECTED_VARIABLE_PATTERN))
-                        selectedVariablesIncluded.add(triple.getObject());
 
-                    bgp.getTriples().add(triple);
+                if (includesAny(combination, acceptedCombinations)) {
+                    metricsService.countCombinations(MetricsService.COMBINATION_PRUNED, 1);
+                    continue;
                 }
 
-                if (selectedVariablesIncluded.size() < numberOfSelectedVariables)
+                BasicGraphPattern bgp = buildCandidatePattern(combination, allCommonTriples, numberOfSelectedVariables);
+                if (null == bgp) {
+                    metricsService.countCombinations(MetricsService.COMBINATION_DISCARDED, 1);
                     continue;
+                }
 
-                Map<Boolean, Integer> results = utilsJena.verifyBasicGraphPattern(bgp.getTriples(), categorizedExamples);
-                if (0 == results.get(Example.CATEGORY_NEGATIVE)) {
-                    bgp.setInformation(computeInformation(results.get(Example.CATEGORY_POSITIVE)));
-                    if (bgp.getInformation() >= informationGainThreshold)
-                        return bgp;
+                windowCombinations.add(combination);
+                window.add(bgp);
+                if (window.size() >= Math.max(1, bgpSearchParallelism)) {
+                    if (!consume(evaluatePatterns(session, windowCombinations, window, examples, pruner), acceptedCombinations, consumer))
+                        return;
+                    windowCombinations.clear();
+                    window.clear();
                 }
             }
+            if (consume(evaluatePatterns(session, windowCombinations, window, examples, pruner), acceptedCombinations, consumer))
+                consumer.sizeCompleted();
+        } finally {
+            if (null != pruner)
+                logger.log(Level.INFO, pruner.getVerifiedPatterns() + " candidate patterns verified, " + pruner.getPrunedPatterns() + " resolved and "
+                        + pruner.getPrunedVerifications() + " example verifications skipped by subsumption.");
+        }
+    }
+
+    // hands the accepted patterns of a window to the consumer, returning false if it stopped the search.
+    private boolean consume(Map<Long, BasicGraphPattern> acceptedPatterns, List<Long> acceptedCombinations, PatternConsumer consumer) {
+        for (Map.Entry<Long, BasicGraphPattern> accepted : acceptedPatterns.entrySet()) {
+            acceptedCombinations.add(accepted.getKey());
+            if (!consumer.accept(accepted.getValue()))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean includesAny(long combination, List<Long> otherCombinations) {
+        for (long other : otherCombinations) {
+            if ((combination & other) == other)
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean hasSelectedVariable(Triple triple) {
+        return UtilsJena.isSelectedVariable(triple.getSubject()) || UtilsJena.isSelectedVariable(triple.getPredicate()) || UtilsJena.isSelectedVariable(triple.getObject());
+    }
+
+    private BasicGraphPattern buildCandidatePattern(long combination, List<ExampleEntry<String, Triple>> allCommonTriples, int numberOfSelectedVariables) {
+        Set<Node> selectedVariablesIncluded = new HashSet<>();
+
+        BasicGraphPattern bgp = new BasicGraphPattern();
+        for (long remaining = combination; remaining != 0; remaining &= remaining - 1) {
+            Triple triple = allCommonTriples.get(Long.numberOfTrailingZeros(remaining)).getValue();
+
+            if (UtilsJena.isSelectedVariable(triple.getSubject()))
+                selectedVariablesIncluded.add(triple.getSubject());
+            if (UtilsJena.isSelectedVariable(triple.getObject()))
+                selectedVariablesIncluded.add(triple.getObject());
+
+            bgp.getTriples().add(triple);
+        }
+
+        if (selectedVariablesIncluded.size() < numberOfSelectedVariables)
+            return null;
+        return bgp;
+    }
+
+    /**
+     * Verifies the candidate patterns concurrently.
+     *
+     * @param pruner (Optional) skips the examples already refuted by the subsets of each combination.
+     * @return the accepted patterns by their combination, in the same order as the candidates.
+     */
+    private Map<Long, BasicGraphPattern> evaluatePatterns(LearningSession session, List<Long> combinations, List<BasicGraphPattern> candidates, List<Example> examples, SubsumptionPruner pruner) {
+        List<List<Example>> examplesToVerify = new ArrayList<>(candidates.size());
+        List<CompletableFuture<Set<Example>>> verifications = new ArrayList<>(candidates.size());
+        for (int i = 0; i < candidates.size(); i++) {
+            BasicGraphPattern bgp = candidates.get(i);
+            List<Example> bgpExamples = (null != pruner) ? pruner.examplesToVerify(combinations.get(i), bgp.getTriples()) : examples;
+            examplesToVerify.add(bgpExamples);
+
+            metricsService.countCombinations(bgpExamples.isEmpty() ? MetricsService.COMBINATION_PRUNED : MetricsService.COMBINATION_VERIFIED, 1);
+            if (bgpExamples.isEmpty())
+                verifications.add(CompletableFuture.completedFuture(Collections.emptySet()));
+            else if (candidates.size() == 1)
+                verifications.add(CompletableFuture.completedFuture(utilsJena.coveredExamples(bgp.getTriples(), bgpExamples, session.getDatasets())));
+            else
+                verifications.add(queryExecutionService.submit(() -> utilsJena.coveredExamples(bgp.getTriples(), bgpExamples, session.getDatasets())));
+        }
+
+        Map<Long, BasicGraphPattern> acceptedPatterns = new LinkedHashMap<>();
+        for (int i = 0; i < candidates.size(); i++) {
+            BasicGraphPattern bgp = candidates.get(i);
+            Set<Example> coveredExamples = QueryExecutionService.await(verifications.get(i));
+            if (null != pruner)
+                pruner.record(combinations.get(i), examplesToVerify.get(i), coveredExamples);
+
+            if (isAnswer(coveredExamples)) {
+                long positiveExamplesCovered = coveredExamples.stream().filter(example -> Example.CATEGORY_POSITIVE.equals(example.getCategory())).count();
+                bgp.setInformation(computeInformation((int) positiveExamplesCovered, session.getParsedExamples().size()));
+                if (bgp.getInformation() >= informationGainThreshold)
+                    acceptedPatterns.put(combinations.get(i), bgp);
+            }
+        }
+        return acceptedPatterns;
+    }
+
+    /**
+     * Derives the candidate triples of the positive examples from every dataset at the same time, merging them by
+     * example.
+     *
+     * @param offset position of the first triples derived for each item, unless the crawls of the session are resumed.
+     * @return the candidate triples by example, or null if some example is not present in any dataset.
+     */
+    private Map<Example, Set<ExampleEntry<String, Triple>>> deriveCandidateTriples(LearningSession session, Map<Integer, List<Example>> positiveExamplesByComponent, int offset) throws IOException {
+        List<String> datasets = session.getDatasets();
+        if (datasets.isEmpty())
+            return deriveCandidateTriples(session, positiveExamplesByComponent, Optional.empty(), offset, true);
+
+        List<Map<Example, Set<ExampleEntry<String, Triple>>>> datasetCandidateTriples = forEachDataset(datasets,
+                dataset -> deriveCandidateTriples(session, positiveExamplesByComponent, Optional.of(dataset), offset, false));
+
+        Map<Example, Set<ExampleEntry<String, Triple>>> candidateTriples = new HashMap<>();
+        for (Map<Example, Set<ExampleEntry<String, Triple>>> triples : datasetCandidateTriples) {
+            for (Map.Entry<Example, Set<ExampleEntry<String, Triple>>> entry : triples.entrySet())
+                candidateTriples.computeIfAbsent(entry.getKey(), example -> new LinkedHashSet<>()).addAll(entry.getValue());
+        }
+        for (List<Example> componentExamples : positiveExamplesByComponent.values()) {
+            for (Example componentExample : componentExamples) {
+                if (candidateTriples.getOrDefault(componentExample, Collections.emptySet()).isEmpty())
+                    return null;
+            }
         }
-        return null;
+        return candidateTriples;
     }
 
-    private Map<Example, Set<ExampleEntry<String, Triple>>> deriveCandidateTriples(Map<Integer, List<Example>> positiveExamplesByComponent, Optional<String> dataset, int offset) throws IOException {
+    /**
+     * @param stopOnMissingExample give up as soon as an example is not found, instead of deriving the rest of them.
+     */
+    private Map<Example, Set<ExampleEntry<String, Triple>>> deriveCandidateTriples(LearningSession session, Map<Integer, List<Example>> positiveExamplesByComponent, Optional<String> dataset, int offset, boolean stopOnMissingExample) throws IOException {
         Set<Integer> componentKeys = positiveExamplesByComponent.keySet();
 
         Map<Example, Set<ExampleEntry<String, Triple>>> candidateTriples = new HashMap<>();
-        logger.log(Level.INFO, "Starting to derive candidate triples...");
+        logger.log(Level.INFO, "Starting to derive candidate triples" + dataset.map(d -> " from " + d).orElse("") + "...");
         for (Integer componentKey : componentKeys) {
             List<Example> componentExamples = positiveExamplesByComponent.get(componentKey);
             for (Example componentExample : componentExamples) {
-                candidateTriples.put(componentExample, tripleFinder.deriveCandidateTriples(componentExample.getExample(), dataset, offset));
+                QueryContext.checkCancelled();
+                if (resumeCrawl)
+                    candidateTriples.put(componentExample, tripleFinder.deriveCandidateTriples(session.getCrawl(componentExample, dataset)));
+                else
+                    candidateTriples.put(componentExample, tripleFinder.deriveCandidateTriples(componentExample.getExample(), dataset, offset));
                 // this is because there might be examples that are not present on the dataset, so we can't learn anything from them.
-                if (candidateTriples.get(componentExample).isEmpty())
+                if (stopOnMissingExample && candidateTriples.get(componentExample).isEmpty())
                     return null;
             }
         }
@@ -214,8 +631,13 @@ public class QueryLearner {
         return candidateTriples;
     }
 
-    private Map<Example, Set<ExampleEntry<String, Triple>>> filterCommonTriples(Map<Example, Set<ExampleEntry<String, Triple>>> candidateTriples, Map<Integer, List<Example>> positiveExamplesByComponent) {
-        Map<Example, Set<ExampleEntry<String, Triple>>> commonTriples = new HashMap<>();
+    /**
+     * Keeps, for the first example of each component, one candidate triple per predicate shared by all the examples of
+     * the component. The common triples are lists, as {@link #introduceVariables} rewrites them and they would no
+     * longer be found in a hashed collection.
+     */
+    Map<Example, List<ExampleEntry<String, Triple>>> filterCommonTriples(Map<Example, Set<ExampleEntry<String, Triple>>> candidateTriples, Map<Integer, List<Example>> positiveExamplesByComponent) {
+        Map<Example, List<ExampleEntry<String, Triple>>> commonTriples = new HashMap<>();
 
         if (null == candidateTriples)
             return commonTriples;
@@ -223,81 +645,60 @@ public class QueryLearner {
         Set<Integer> keys = positiveExamplesByComponent.keySet();
         for (Integer key : keys) {
             List<Example> examples = positiveExamplesByComponent.get(key);
-            // the structure of this map is <UserProvidedExample, Set of triples that belongs to that example>
-            Map<Example, Set<ExampleEntry<String, Triple>>> componentCandidateTriples = new HashMap<>();
-
-            for (Example example : examples) {
-                Set<Example> candidateTriplesKeySet = candidateTriples.keySet();
-                candidateTriplesKeySet.stream().forEach(ctKey -> {
-                    if (example.equals(ctKey))
-                        componentCandidateTriples.put(ctKey, candidateTriples.get(ctKey));
-                });
-            }
 
             // this is the first example on each component
             Example example = examples.get(0);
+            Set<ExampleEntry<String, Triple>> exampleCandidateTriples = candidateTriples.get(example);
+            if (null == exampleCandidateTriples)
+                continue;
+
+            Set<Node> commonPredicates = new HashSet<>();
+            for (ExampleEntry<String, Triple> ect : exampleCandidateTriples)
+                commonPredicates.add(ect.getValue().getPredicate());
+            for (Example otherExample : examples.subList(1, examples.size())) {
+                commonPredicates = retainPredicates(commonPredicates, candidateTriples.get(otherExample));
+                if (commonPredicates.isEmpty())
+                    break;
+            }
 
-            Set<ExampleEntry<String, Triple>> exampleCandidateTriples = componentCandidateTriples.get(example);
-
-            Map<Example, Set<ExampleEntry<String, Triple>>> otherTriplesInTheComponent = new HashMap<>();
-            Set<Example> componentTriplesKeySet = componentCandidateTriples.keySet();
-            componentTriplesKeySet.stream().forEach(ctKey -> {
-                if (!ctKey.equals(example))
-                    otherTriplesInTheComponent.put(ctKey, componentCandidateTriples.get(ctKey));
-            });
-
+            List<ExampleEntry<String, Triple>> triples = commonTriples.getOrDefault(example, new ArrayList<>());
             for (ExampleEntry<String, Triple> ect : exampleCandidateTriples) {
-                boolean common = false;
-                Set<Example> exampleKeys = otherTriplesInTheComponent.keySet();
-                for (Example ek : exampleKeys) {
-                    Set<ExampleEntry<String, Triple>> triples = otherTriplesInTheComponent.get(ek);
-                    for (ExampleEntry<String, Triple> entry : triples) {
-                        if (entry.getValue().getPredicate().equals(ect.getValue().getPredicate())) {
-                            common = true;
-                            break;
-                        } else
-                            common = false;
-                    }
-                }
-                if (common) {
-                    Set<ExampleEntry<String, Triple>> triples;
-                    if (commonTriples.containsKey(example)) {
-                        triples = commonTriples.get(example);
-                        boolean alreadyAdded = false;
-
-                        for (ExampleEntry<String, Triple> entry : triples) {
-                            if (entry.getValue().getPredicate().equals(ect.getValue().getPredicate())) {
-                                alreadyAdded = true;
-                                break;
-                            }
-                        }
-
-                        if (!alreadyAdded) {
-                            triples.add(ect);
-                            commonTriples.replace(example, triples);
-                        }
-                    } else {
-                        triples = new HashSet<>();
-                        triples.add(ect);
-                        commonTriples.put(example, triples);
-                    }
-                }
+                // removing the predicate keeps only the first triple found for it.
+                // this is a copy because introduceVariables modifies the common triples, and the candidate ones are hashed by value
+                if (commonPredicates.remove(ect.getValue().getPredicate()))
+                    triples.add(new ExampleEntry<>(ect.getKey(), ect.getValue()));
             }
-
+            if (!triples.isEmpty())
+                commonTriples.put(example, triples);
         }
         return commonTriples;
     }
 
+    // the predicates that also appear in the given triples.
+    private Set<Node> retainPredicates(Set<Node> predicates, Set<ExampleEntry<String, Triple>> triples) {
+        Set<Node> retainedPredicates = new HashSet<>();
+        if (null == triples)
+            return retainedPredicates;
 
-
+        for (ExampleEntry<String, Triple> entry : triples) {
+            Node predicate = entry.getValue().getPredicate();
+            if (predicates.contains(predicate))
+                retainedPredicates.add(predicate);
+        }
+        return retainedPredicates;
+    }
 
     /**
      * @param componentCandidateTriples set of candidate triples to find a variable value. The structure is <Example, Triple>
-     * @param parsedExamples            the parsed examples set.
-     * @param triplesBySelectedVariable required by the constructHyperedges algorithm to know if the selected variable is present in more than one triple.
+     * @param session                   the learning run, holding the parsed examples and the variables introduced so far.
+     * @return the amount of selected variables introduced in the session.
      */
 
-    private int introduceVariables(Set<ExampleEntry<String, Triple>> componentCandidateTriples, Set<Example> parsedExamples, Map<String, List<Triple>> triplesBySelectedVariable) {
+    int introduceVariables(List<ExampleEntry<String, Triple>> componentCandidateTriples, LearningSession session) {
+        Set<Example> parsedExamples = session.getParsedExamples();
+        // required by the constructHyperedges algorithm to know if the selected variable is present in more than one triple.
+        Map<String, List<Triple>> triplesBySelectedVariable = session.getTriplesBySelectedVariable();
+        Map<String, Node> variableNames = session.getVariableNames();
         for (ExampleEntry<String, Triple> cct : componentCandidateTriples) {
             boolean isExampleProvidedByUser = parsedExamples.stream().anyMatch(example -> example.getExample().equals(cct.getKey()));
 
@@ -305,18 +706,21 @@ public class QueryLearner {
                 Node newSubject, newObject;
                 if (!variableNames.containsKey(cct.getKey())) {
                     if (isExampleProvidedByUser)
-                        newSubject = NodeFactory.createVariable(UtilsJena.SELECTED_VARIABLE_PATTERN + svIndex++);
+                        newSubject = session.newSelectedVariable();
                     else
-                        newSubject = NodeFactory.createVariable("x" + nsvIndex++);
+                        newSubject = session.newVariable();
 
-                    newObject = NodeFactory.createVariable("x" + nsvIndex++);
+                    // the object may already have a variable if it was found in another triple
+                    newObject = variableNames.get(cct.getValue().getObject().toString());
+                    if (null == newObject)
+                        newObject = session.newVariable();
 
                     variableNames.put(cct.getKey(), newSubject);
                     variableNames.put(cct.getValue().getObject().toString(), newObject);
 
                     cct.setValue(new Triple(newSubject, cct.getValue().getPredicate(), newObject));
 
-                    if (newSubject.toString().contains(UtilsJena.SELECTED_VARIABLE_PATTERN)) {
+                    if (UtilsJena.isSelectedVariable(newSubject)) {
                         if (!triplesBySelectedVariable.containsKey(newSubject.toString())) {
                             List<Triple> tripleList = new LinkedList<>();
                             tripleList.add(cct.getValue());
@@ -329,12 +733,12 @@ public class QueryLearner {
                     }
                 } else {
                     if (!variableNames.containsKey(cct.getValue().getObject().toString())) {
-                        newObject = NodeFactory.createVariable("x" + nsvIndex++);
+                        newObject = session.newVariable();
                         variableNames.put(cct.getValue().getObject().toString(), newObject);
                     }
                     cct.setValue(new Triple(variableNames.get(cct.getKey()), cct.getValue().getPredicate(), variableNames.get(cct.getValue().getObject().toString())));
 
-                    if (cct.getValue().getSubject().toString().contains(UtilsJena.SELECTED_VARIABLE_PATTERN)) {
+                    if (UtilsJena.isSelectedVariable(cct.getValue().getSubject())) {
                         List<Triple> tripleList = triplesBySelectedVariable.get(cct.getValue().getSubject().toString());
                         tripleList.add(cct.getValue());
                         triplesBySelectedVariable.replace(cct.getValue().getSubject().toString(), tripleList);
@@ -344,15 +748,15 @@ public class QueryLearner {
                 Node newPredicate;
                 if (!variableNames.containsKey(cct.getKey())) {
                     if (isExampleProvidedByUser)
-                        newPredicate = NodeFactory.createVariable(UtilsJena.SELECTED_VARIABLE_PATTERN + svIndex++);
+                        newPredicate = session.newSelectedVariable();
                     else
-                        newPredicate = NodeFactory.createVariable("x" + nsvIndex++);
+                        newPredicate = session.newVariable();
 
                     variableNames.put(cct.getKey(), newPredicate);
 
                     cct.setValue(new Triple(cct.getValue().getSubject(), newPredicate, cct.getValue().getObject()));
 
-                    if (newPredicate.toString().contains(UtilsJena.SELECTED_VARIABLE_PATTERN)) {
+                    if (UtilsJena.isSelectedVariable(newPredicate)) {
                         if (!triplesBySelectedVariable.containsKey(newPredicate.toString())) {
                             List<Triple> tripleList = new LinkedList<>();
                             tripleList.add(cct.getValue());
@@ -366,7 +770,7 @@ public class QueryLearner {
                 } else {
                     cct.setValue(new Triple(cct.getValue().getSubject(), variableNames.get(cct.getKey()), cct.getValue().getObject()));
 
-                    if (cct.getValue().getPredicate().toString().contains(UtilsJena.SELECTED_VARIABLE_PATTERN)) {
+                    if (UtilsJena.isSelectedVariable(cct.getValue().getPredicate())) {
                         List<Triple> tripleList = triplesBySelectedVariable.get(cct.getValue().getPredicate().toString());
                         tripleList.add(cct.getValue());
                         triplesBySelectedVariable.replace(cct.getValue().getPredicate().toString(), tripleList);
@@ -376,18 +780,21 @@ public class QueryLearner {
                 Node newSubject, newObject;
                 if (!variableNames.containsKey(cct.getKey())) {
                     if (isExampleProvidedByUser)
-                        newObject = NodeFactory.createVariable(UtilsJena.SELECTED_VARIABLE_PATTERN + svIndex++);
+                        newObject = session.newSelectedVariable();
                     else
-                        newObject = NodeFactory.createVariable("x" + nsvIndex++);
+                        newObject = session.newVariable();
 
-                    newSubject = NodeFactory.createVariable("x" + nsvIndex++);
+                    // the subject may already have a variable if it was found in another triple
+                    newSubject = variableNames.get(cct.getValue().getSubject().toString());
+                    if (null == newSubject)
+                        newSubject = session.newVariable();
 
                     variableNames.put(cct.getKey(), newObject);
                     variableNames.put(cct.getValue().getSubject().toString(), newSubject);
 
                     cct.setValue(new Triple(newSubject, cct.getValue().getPredicate(), newObject));
 
-                    if (newObject.toString().contains(UtilsJena.SELECTED_VARIABLE_PATTERN)) {
+                    if (UtilsJena.isSelectedVariable(newObject)) {
                         if (!triplesBySelectedVariable.containsKey(newObject.toString())) {
                             List<Triple> tripleList = new LinkedList<>();
                             tripleList.add(cct.getValue());
@@ -400,12 +807,12 @@ public class QueryLearner {
                     }
                 } else {
                     if (!variableNames.containsKey(cct.getValue().getSubject().toString())) {
-                        newSubject = NodeFactory.createVariable("x" + nsvIndex++);
+                        newSubject = session.newVariable();
                         variableNames.put(cct.getValue().getSubject().toString(), newSubject);
                     }
                     cct.setValue(new Triple(variableNames.get(cct.getValue().getSubject().toString()), cct.getValue().getPredicate(), variableNames.get(cct.getKey())));
 
-                    if (cct.getValue().getObject().toString().contains(UtilsJena.SELECTED_VARIABLE_PATTERN)) {
+                    if (UtilsJena.isSelectedVariable(cct.getValue().getObject())) {
                         List<Triple> tripleList = triplesBySelectedVariable.get(cct.getValue().getObject().toString());
                         tripleList.add(cct.getValue());
                         triplesBySelectedVariable.replace(cct.getValue().getObject().toString(), tripleList);
@@ -413,11 +820,20 @@ public class QueryLearner {
                 }
             }
         }
-        return svIndex;
+        return session.getSelectedVariablesIntroduced();
+    }
+
+    /**
+     * A pattern is an answer when it covers no negative example and at least one positive one. A pattern matching none
+     * of the positive examples would otherwise get an infinite information and be accepted.
+     */
+    static boolean isAnswer(Set<Example> coveredExamples) {
+        Map<Boolean, Long> results = coveredExamples.stream().collect(Collectors.partitioningBy(Example::getCategory, Collectors.counting()));
+        return (0 == results.get(Example.CATEGORY_NEGATIVE)) && (0 < results.get(Example.CATEGORY_POSITIVE));
     }
 
-    private double computeInformation(Integer positiveExamplesCovered) {
-        return -(Math.log(((double) positiveExamplesCovered) / parsedExamples.size()) / Math.log(2));
+    private double computeInformation(Integer positiveExamplesCovered, int examplesAmount) {
+        return -(Math.log(((double) positiveExamplesCovered) / examplesAmount) / Math.log(2));
     }
 
 }
@@ -0,0 +1,113 @@
+package base.learners;
+
+import base.domain.Example;
+import base.utils.UtilsJena;
+import org.apache.jena.graph.Triple;
+
+import java.util.*;
+
+/**
+ * Remembers which examples each verified combination of common triples failed to match, to avoid asking the
+ * endpoint about them again for the larger combinations.
+ *
+ * Adding triples to a conjunctive pattern can only restrict its matches, so an example that is not matched by a
+ * combination is not matched by any of its supersets either. The combinations are verified by increasing size, so
+ * when a combination is verified all of its immediate subsets have already been recorded.
+ */
+class SubsumptionPruner {
+    private final List<Example> examples;
+    private final Map<Example, Integer> exampleIndexes = new IdentityHashMap<>();
+    private Map<Long, BitSet> previousLevel = new HashMap<>();
+    private Map<Long, BitSet> currentLevel = new HashMap<>();
+    private int level = -1;
+    private long verifiedPatterns = 0;
+    private long prunedPatterns = 0;
+    private long prunedVerifications = 0;
+
+    SubsumptionPruner(List<Example> examples) {
+        this.examples = examples;
+        for (int i = 0; i < examples.size(); i++)
+            exampleIndexes.put(examples.get(i), i);
+    }
+
+    /**
+     * @param combination the combination of common triples about to be verified.
+     * @param triples     the triples of the combination.
+     * @return the examples whose outcome is not implied by the subsets of the combination, and must be verified. None
+     * if no positive example is left, as the combination can't be an answer then.
+     */
+    List<Example> examplesToVerify(long combination, Set<Triple> triples) {
+        int size = Long.bitCount(combination);
+        if (size != level) {
+            previousLevel = (size == level + 1) ? currentLevel : new HashMap<>();
+            currentLevel = new HashMap<>();
+            level = size;
+        }
+
+        BitSet candidates = candidates(combination);
+        List<Example> examplesToVerify = new LinkedList<>();
+        for (int i = candidates.nextSetBit(0); i >= 0; i = candidates.nextSetBit(i + 1)) {
+            Example example = examples.get(i);
+            if (UtilsJena.isSelectedVariableReplaced(triples, example.getPosition()))
+                examplesToVerify.add(example);
+        }
+        // an answer matches some positive example, so without any left the combination is rejected already
+        if (examplesToVerify.stream().noneMatch(example -> Example.CATEGORY_POSITIVE.equals(example.getCategory())))
+            examplesToVerify.clear();
+
+        int replacedExamples = 0;
+        for (Example example : examples) {
+            if (UtilsJena.isSelectedVariableReplaced(triples, example.getPosition()))
+                replacedExamples++;
+        }
+        prunedVerifications += replacedExamples - examplesToVerify.size();
+        if (examplesToVerify.isEmpty())
+            prunedPatterns++;
+        else
+            verifiedPatterns++;
+
+        return examplesToVerify;
+    }
+
+    /**
+     * Records the outcome of the verification of a combination.
+     *
+     * @param verifiedExamples the examples returned by {@link #examplesToVerify(long, Set)}.
+     * @param coveredExamples  the verified examples matched by the combination.
+     */
+    void record(long combination, Collection<Example> verifiedExamples, Collection<Example> coveredExamples) {
+        BitSet notRefuted = candidates(combination);
+        for (Example example : verifiedExamples)
+            notRefuted.clear(exampleIndexes.get(example));
+        for (Example example : coveredExamples)
+            notRefuted.set(exampleIndexes.get(example));
+
+        // combinations that refute nothing do not constrain their supersets.
+        if (notRefuted.cardinality() < examples.size())
+            currentLevel.put(combination, notRefuted);
+    }
+
+    long getVerifiedPatterns() {
+        return verifiedPatterns;
+    }
+
+    long getPrunedPatterns() {
+        return prunedPatterns;
+    }
+
+    long getPrunedVerifications() {
+        return prunedVerifications;
+    }
+
+    // the examples not refuted by any immediate subset of the combination.
+    private BitSet candidates(long combination) {
+        BitSet candidates = new BitSet(examples.size());
+        candidates.set(0, examples.size());
+        for (long remaining = combination; remaining != 0; remaining &= remaining - 1) {
+            BitSet subsetNotRefuted = previousLevel.get(combination & ~Long.lowestOneBit(remaining));
+            if (null != subsetNotRefuted)
+                candidates.and(subsetNotRefuted);
+        }
+        return candidates;
+    }
+}
@@ -0,0 +1,76 @@
+package base.learners;
+
+import base.domain.EncodedEntries;
+import base.domain.IntPriorityQueueSet;
+import base.domain.IntQueueSet;
+import base.domain.NodeDictionary;
+import base.utils.DerivationCursor;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * State of the search of the candidate triples of an example, kept between the calls to
+ * {@link TripleFinder#deriveCandidateTriples(TripleCrawl)} so that asking for more triples resumes the search where
+ * it stopped, instead of crawling again the triples already found.
+ */
+class TripleCrawl {
+    private final String example;
+    private final Optional<String> dataset;
+    private final int offset;
+    // this is to crawl with the identifiers of the triples, the entries are only built for the ones returned
+    private final EncodedEntries entries = new EncodedEntries(new NodeDictionary());
+    private final IntQueueSet candidateTriples = new IntQueueSet();
+    // the triples to visit, all with the same priority unless the crawl is best-first.
+    private final IntPriorityQueueSet queue = new IntPriorityQueueSet();
+    private final Map<String, DerivationCursor> cursors = new HashMap<>();
+    // the cursors whose last page was full, so they may have more triples.
+    private final Deque<DerivationCursor> truncatedCursors = new ArrayDeque<>();
+
+    /**
+     * @param offset position of the first triples derived for each item.
+     */
+    TripleCrawl(String example, Optional<String> dataset, int offset) {
+        this.example = example;
+        this.dataset = dataset;
+        this.offset = offset;
+        truncatedCursors.add(newCursor(example));
+    }
+
+    String getExample() {
+        return example;
+    }
+
+    Optional<String> getDataset() {
+        return dataset;
+    }
+
+    EncodedEntries getEntries() {
+        return entries;
+    }
+
+    IntQueueSet getCandidateTriples() {
+        return candidateTriples;
+    }
+
+    IntPriorityQueueSet getQueue() {
+        return queue;
+    }
+
+    Deque<DerivationCursor> getTruncatedCursors() {
+        return truncatedCursors;
+    }
+
+    boolean hasCursor(String item) {
+        return cursors.containsKey(item);
+    }
+
+    DerivationCursor newCursor(String item) {
+        DerivationCursor cursor = new DerivationCursor(item, dataset, offset);
+        cursors.put(item, cursor);
+        return cursor;
+    }
+}
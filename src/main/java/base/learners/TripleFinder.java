@@ -1,22 +1,27 @@
 package base.learners;
 
+import base.domain.EncodedEntries;
 import base.domain.ExampleEntry;
-import base.domain.Property;
-import base.domain.QueueSet;
+import base.domain.IntPriorityQueueSet;
+import base.domain.IntQueueSet;
+import base.domain.NodeDictionary;
+import base.domain.PropertyRank;
 import base.services.PropertiesService;
+import base.services.QueryContext;
+import base.services.QueryExecutionService;
+import base.utils.DerivationCursor;
 import base.utils.UtilsJena;
 import org.apache.jena.graph.Triple;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 import java.io.IOException;
-import java.util.Hashtable;
-import java.util.Optional;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 /**
  * @author Leandro Tabares Martín
@@ -27,70 +32,177 @@ import java.util.stream.Collectors;
 @Lazy
 public class TripleFinder {
     private final Logger logger = Logger.getLogger(TripleFinder.class.getName());
+    public static final String FRONTIER_FIFO = "fifo";
+    public static final String FRONTIER_BEST_FIRST = "bestFirst";
     @Value("${sparqlear.verifyPredicatesRank}")
     private Boolean verifyPredicatesRank;
     @Value("${sparqlear.propertyWeight.threshold}")
     private float weightThreshold;
     @Value("${sparqlear.sparql.candidateTriples.limit}")
     private int limit;
+    @Value("${sparqlear.tripleFinder.parallelExpansion}")
+    private Boolean parallelExpansion;
+    @Value("${sparqlear.tripleFinder.frontier}")
+    private String frontier;
+    @Value("${sparqlear.tripleFinder.bestFirst.degree}")
+    private Boolean degreeAware;
     @Resource
     private UtilsJena utilsJena;
     @Resource
     private PropertiesService propertiesService;
 
-    private Hashtable<Integer, Property> rankedProperties;
+    @PostConstruct
+    private void init() {
+        if ((!FRONTIER_FIFO.equals(frontier)) && (!FRONTIER_BEST_FIRST.equals(frontier)))
+            throw new IllegalArgumentException("Unknown sparqlear.tripleFinder.frontier: " + frontier + ", expected fifo or bestFirst.");
+    }
 
     public Set<ExampleEntry<String, Triple>> deriveCandidateTriples(String example, Optional<String> dataset, int offset) throws IOException {
-        if (verifyPredicatesRank)
-            rankedProperties = propertiesService.loadProperties();
-
+        return deriveCandidateTriples(new TripleCrawl(example, dataset, offset));
+    }
 
-        Set<ExampleEntry<String, Triple>> candidateTriples = new QueueSet<>();
-        Set<ExampleEntry<String, Triple>> queue;
+    /**
+     * Finds up to sparqlear.sparql.candidateTriples.limit more candidate triples, resuming the crawl where the previous
+     * call stopped. Once the queue runs out, the items whose derivation was cut by the limit are derived again from
+     * where their results were left.
+     *
+     * @return the candidate triples found in this call.
+     */
+    Set<ExampleEntry<String, Triple>> deriveCandidateTriples(TripleCrawl crawl) throws IOException {
+        // the same rank for the whole call, even if it is reloaded meanwhile
+        PropertyRank rank = propertiesService.getRank();
+
+        EncodedEntries entries = crawl.getEntries();
+        IntPriorityQueueSet queue = crawl.getQueue();
+        IntQueueSet foundTriples = new IntQueueSet(limit);
         try {
-            queue = (Set<ExampleEntry<String, Triple>>) utilsJena.deriveTriples(example, dataset, limit, offset).stream()
-                    .map(t -> new ExampleEntry<>(example, (Triple) t))
-                    .collect(Collectors.toCollection(QueueSet::new));
+            while (foundTriples.size() < limit) {
+                QueryContext.checkCancelled();
+                if (queue.isEmpty()) {
+                    if (crawl.getTruncatedCursors().isEmpty())
+                        break;
+                    resumeTruncated(crawl, rank, foundTriples);
+                    continue;
+                }
+                if (parallelExpansion) {
+                    expandFrontier(crawl, rank, foundTriples);
+                    continue;
+                }
+
+                int pair = queue.poll();
+                visit(crawl, foundTriples, pair);
+
+                NodeDictionary dictionary = entries.getDictionary();
+                String subject = dictionary.getCanonicalLabel(entries.getSubject(pair));
+                checkPredicatesRank(crawl, rank, foundTriples, subject);
+
+                String predicate = dictionary.getCanonicalLabel(entries.getPredicate(pair));
+                checkPredicatesRank(crawl, rank, foundTriples, predicate);
+
+                String object = dictionary.getCanonicalLabel(entries.getObject(pair));
+                checkPredicatesRank(crawl, rank, foundTriples, object);
+            }
 
-            while ((!queue.isEmpty()) && (candidateTriples.size() < limit)){
-                ExampleEntry<String, Triple> pair = (ExampleEntry<String, Triple>) ((QueueSet)queue).poll();
-                candidateTriples.add(pair);
+        } catch (IOException e) {
+            throw new IOException("Please check the endpoint and dataset parameters.");
+        }
 
-                Triple triple = pair.getValue();
-                String subject = UtilsJena.getCanonicalExample(triple.getSubject().toString());
-                checkPredicatesRank(example, dataset, limit, candidateTriples, queue, subject, offset);
+        return entries.toEntries(foundTriples);
+    }
 
-                String predicate = UtilsJena.getCanonicalExample(triple.getPredicate().toString());
-                checkPredicatesRank(example, dataset, limit, candidateTriples, queue, predicate, offset);
 
-                String object = UtilsJena.getCanonicalExample(triple.getObject().toString());
-                checkPredicatesRank(example, dataset, limit, candidateTriples, queue, object, offset);
-            }
+    /**
+     * Level-synchronous expansion: the whole current frontier is moved to the candidate triples and the derivations
+     * of all its nodes are sent to the endpoint at once. The results are queued in the order of the frontier, so the
+     * output is the same from one run to another.
+     */
+    private void expandFrontier(TripleCrawl crawl, PropertyRank rank, IntQueueSet foundTriples) throws IOException {
+        EncodedEntries entries = crawl.getEntries();
+        NodeDictionary dictionary = entries.getDictionary();
+        IntPriorityQueueSet queue = crawl.getQueue();
+        Set<String> items = new LinkedHashSet<>();
+        while ((!queue.isEmpty()) && (foundTriples.size() < limit)) {
+            int pair = queue.poll();
+            visit(crawl, foundTriples, pair);
+
+            items.add(dictionary.getCanonicalLabel(entries.getSubject(pair)));
+            items.add(dictionary.getCanonicalLabel(entries.getPredicate(pair)));
+            items.add(dictionary.getCanonicalLabel(entries.getObject(pair)));
+        }
 
-        } catch (IOException e) {
-            throw new IOException("Please check the endpoint and dataset parameters.");
+        int remaining = limit - foundTriples.size();
+        if (remaining <= 0)
+            return;
+
+        List<DerivationCursor> cursors = new ArrayList<>();
+        for (String item : items) {
+            if ((!crawl.hasCursor(item)) && isRankAccepted(rank, item))
+                cursors.add(crawl.newCursor(item));
         }
+        derive(crawl, rank, cursors, remaining);
+    }
 
-        return candidateTriples;
+    // derives the next triples of the items whose results were cut by the limit.
+    private void resumeTruncated(TripleCrawl crawl, PropertyRank rank, IntQueueSet foundTriples) throws IOException {
+        List<DerivationCursor> cursors = new ArrayList<>(crawl.getTruncatedCursors());
+        crawl.getTruncatedCursors().clear();
+        derive(crawl, rank, cursors, limit - foundTriples.size());
     }
 
+    private void checkPredicatesRank(TripleCrawl crawl, PropertyRank rank, IntQueueSet foundTriples, String label) throws IOException {
+        int remaining = limit - foundTriples.size();
+        // the items already derived are continued through their cursors once the queue runs out.
+        if ((remaining > 0) && (!crawl.hasCursor(label)) && isRankAccepted(rank, label))
+            derive(crawl, rank, Collections.singletonList(crawl.newCursor(label)), remaining);
+    }
 
-    private void checkPredicatesRank(String example, Optional<String> dataset, int limit, Set<ExampleEntry<String, Triple>> candidateTriples, Set<ExampleEntry<String, Triple>> queue, String label, int offset) throws IOException {
+    private boolean isRankAccepted(PropertyRank rank, String label) {
         if (verifyPredicatesRank) {
-            Property property = rankedProperties.get(label.hashCode());
-            if ((null != property) && (property.getWeight() >= weightThreshold))
-                derive(example, dataset, limit, candidateTriples, queue, label, offset);
-            else if (null == property)
-                derive(example, dataset, limit, candidateTriples, queue, label, offset);
-        } else
-            derive(example, dataset, limit, candidateTriples, queue, label, offset);
+            float weight = rank.getWeight(label);
+            return Float.isNaN(weight) || (weight >= weightThreshold);
+        }
+        return true;
     }
 
-    private void derive(String example, Optional<String> dataset, int limit, Set<ExampleEntry<String, Triple>> candidateTriples, Set<ExampleEntry<String, Triple>> queue, String item, int offset) throws IOException {
-        if (!example.equals(item)) {
-            queue.addAll((Set<ExampleEntry<String, Triple>>) utilsJena.deriveTriples(item, dataset, limit - candidateTriples.size(), offset).stream()
-                    .map(t -> new ExampleEntry<>(item, (Triple) t))
-                    .collect(Collectors.toCollection(QueueSet::new)));
+    // sends the derivations of all the cursors at once, queueing their triples in the order of the cursors.
+    private void derive(TripleCrawl crawl, PropertyRank rank, List<DerivationCursor> cursors, int rows) throws IOException {
+        Map<DerivationCursor, CompletableFuture<Set<Triple>>> derivations = new LinkedHashMap<>();
+        for (DerivationCursor cursor : cursors)
+            derivations.put(cursor, utilsJena.deriveTriplesAsync(cursor, rows));
+
+        for (Map.Entry<DerivationCursor, CompletableFuture<Set<Triple>>> derivation : derivations.entrySet()) {
+            DerivationCursor cursor = derivation.getKey();
+            Set<Triple> triples = QueryExecutionService.await(derivation.getValue());
+            for (Triple triple : triples)
+                enqueue(crawl, rank, crawl.getEntries().add(cursor.getItem(), triple), triples.size());
+            if (!cursor.isExhausted())
+                crawl.getTruncatedCursors().add(cursor);
         }
     }
+
+    private void visit(TripleCrawl crawl, IntQueueSet foundTriples, int entry) {
+        crawl.getCandidateTriples().add(entry);
+        foundTriples.add(entry);
+    }
+
+    // the triples already moved to the candidate ones are not queued again, otherwise the search would go around the cycles of the graph.
+    private void enqueue(TripleCrawl crawl, PropertyRank rank, int entry, int degree) {
+        if (!crawl.getCandidateTriples().contains(entry))
+            crawl.getQueue().add(entry, FRONTIER_BEST_FIRST.equals(frontier) ? priority(crawl, rank, entry, degree) : 0);
+    }
+
+    /**
+     * Priority of a triple in the best-first crawl: the weight of its predicate in the rank, the threshold for the
+     * predicates not ranked. With sparqlear.tripleFinder.bestFirst.degree it is divided by the logarithm of the amount
+     * of triples derived along with it, so the triples of the hubs of the graph are visited later.
+     */
+    private float priority(TripleCrawl crawl, PropertyRank rank, int entry, int degree) {
+        EncodedEntries entries = crawl.getEntries();
+        float weight = rank.getWeight(entries.getDictionary().getCanonicalLabel(entries.getPredicate(entry)));
+        if (Float.isNaN(weight))
+            weight = weightThreshold;
+        if (degreeAware)
+            weight /= (float) (Math.log(2 + degree) / Math.log(2));
+        return weight;
+    }
 }
@@ -0,0 +1,235 @@
+package base.repository;
+
+import base.domain.PropertyRank;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.annotation.PostConstruct;
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the rank in the Property table of the database.
+ *
+ * The rank is read through a projection of the table streamed in batches. The rows saved are streamed with PostgreSQL
+ * COPY into a staging table and upserted from it in a single statement, or sent as JDBC batches of upserts when COPY
+ * is not available. Either way the rows are never held in memory all at once.
+ */
+@Component
+@ConditionalOnProperty(name = "sparqlear.propertyRank.store", havingValue = "database", matchIfMissing = true)
+public class DatabaseRankStore implements RankStore {
+    private final Logger logger = Logger.getLogger(DatabaseRankStore.class.getName());
+    public static final String METHOD_COPY = "copy";
+    public static final String METHOD_BATCH = "batch";
+    private static final int COPY_BUFFER_SIZE = 1 << 16;
+
+    private static final String FIND_LABEL_INDEX = "SELECT 1 FROM pg_index JOIN pg_class ON pg_class.oid = pg_index.indexrelid "
+            + "WHERE pg_index.indrelid = 'property'::regclass AND pg_class.relname = 'property_label_key'";
+    // the tables created before the index may repeat a label, which must be merged before it can be created
+    private static final String FIND_DUPLICATE_LABELS = "SELECT label FROM property GROUP BY label HAVING COUNT(*) > 1 ORDER BY label LIMIT ?";
+    private static final int LISTED_DUPLICATE_LABELS = 20;
+    private static final String CREATE_LABEL_INDEX = "CREATE UNIQUE INDEX IF NOT EXISTS property_label_key ON property (label)";
+    private static final String CREATE_STAGING = "CREATE TEMPORARY TABLE property_staging (line BIGSERIAL, label VARCHAR(2000), weight REAL) ON COMMIT DROP";
+    private static final String COPY_STAGING = "COPY property_staging (label, weight) FROM STDIN";
+    // the last row of a label wins, as ON CONFLICT cannot update the same row twice in a statement
+    private static final String UPSERT_STAGING = "INSERT INTO property (id, label, weight) "
+            + "SELECT nextval('hibernate_sequence'), label, weight FROM "
+            + "(SELECT DISTINCT ON (label) label, weight FROM property_staging ORDER BY label, line DESC) AS staged "
+            + "ON CONFLICT (label) DO UPDATE SET weight = EXCLUDED.weight";
+    private static final String UPSERT_ROW = "INSERT INTO property (id, label, weight) VALUES (nextval('hibernate_sequence'), ?, ?) "
+            + "ON CONFLICT (label) DO UPDATE SET weight = EXCLUDED.weight";
+
+    @Value("${sparqlear.rankImport.method}")
+    private String method;
+    @Value("${sparqlear.rankImport.batchSize}")
+    private int batchSize;
+    // absent when the application runs without a database, e.g. over a local knowledge base.
+    @Autowired(required = false)
+    private PropertyRepository propertyRepository;
+    @Autowired(required = false)
+    private PlatformTransactionManager transactionManager;
+    @Autowired(required = false)
+    private DataSource dataSource;
+
+    @PostConstruct
+    private void init() {
+        if ((!METHOD_COPY.equals(method)) && (!METHOD_BATCH.equals(method)))
+            throw new IllegalArgumentException("Unknown sparqlear.rankImport.method: " + method + ", expected copy or batch.");
+    }
+
+    @Override
+    public PropertyRank load() throws IOException {
+        if (null == propertyRepository)
+            throw new IOException("There is no database to load the ranked properties from, set sparqlear.propertyRank.store=file to keep the rank without one.");
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(true);
+        try {
+            return transaction.execute(status -> {
+                PropertyRank.Builder builder = new PropertyRank.Builder();
+                // the rows are read in batches and dropped once added, the whole table is never held in memory
+                try (Stream<PropertyWeight> weights = propertyRepository.streamWeights()) {
+                    weights.forEach(weight -> builder.add(weight.getLabel(), weight.getWeight()));
+                }
+                return builder.build();
+            });
+        } catch (RuntimeException e) {
+            throw new IOException("The ranked properties could not be loaded: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public long save(Stream<Map.Entry<String, Float>> rows) throws IOException {
+        if (null == dataSource)
+            throw new IOException("There is no database to import the ranked properties into.");
+
+        long start = System.currentTimeMillis();
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                createLabelIndex(connection);
+                long imported = (METHOD_COPY.equals(method) && connection.isWrapperFor(PGConnection.class))
+                        ? copy(connection, rows) : batch(connection, rows, batchSize);
+                connection.commit();
+                logger.log(Level.INFO, imported + " ranked properties imported in " + (System.currentTimeMillis() - start) + " ms.");
+                return imported;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            throw new IOException("The ranked properties could not be imported: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Creates the unique index on the labels the upserts rely on, if it is not there yet.
+     *
+     * @throws SQLException listing the repeated labels if the table, created without the index, repeats any. They are
+     *                      left to be merged by hand, as the rank can't tell which of the weights is the right one.
+     */
+    static void createLabelIndex(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet index = statement.executeQuery(FIND_LABEL_INDEX)) {
+                if (index.next())
+                    return;
+            }
+
+            List<String> duplicates = new ArrayList<>();
+            try (PreparedStatement find = connection.prepareStatement(FIND_DUPLICATE_LABELS)) {
+                find.setInt(1, LISTED_DUPLICATE_LABELS + 1);
+                try (ResultSet labels = find.executeQuery()) {
+                    while (labels.next())
+                        duplicates.add(labels.getString(1));
+                }
+            }
+            if (!duplicates.isEmpty())
+                throw new SQLException("The Property table repeats the labels " + String.join(", ", duplicates.subList(0, Math.min(duplicates.size(), LISTED_DUPLICATE_LABELS)))
+                        + ((duplicates.size() > LISTED_DUPLICATE_LABELS) ? " among others" : "")
+                        + ", keep a single row for each of them before importing the rank.");
+            statement.execute(CREATE_LABEL_INDEX);
+        }
+    }
+
+    static long copy(Connection connection, Stream<Map.Entry<String, Float>> rows) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(CREATE_STAGING);
+        }
+
+        CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_STAGING);
+        long copied = 0;
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(COPY_BUFFER_SIZE + 4096);
+            Iterator<Map.Entry<String, Float>> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Float> row = iterator.next();
+                byte[] line = (copyText(row.getKey()) + '\t' + row.getValue() + '\n').getBytes(StandardCharsets.UTF_8);
+                buffer.write(line, 0, line.length);
+                copied++;
+                if (buffer.size() >= COPY_BUFFER_SIZE) {
+                    copyIn.writeToCopy(buffer.toByteArray(), 0, buffer.size());
+                    buffer.reset();
+                }
+            }
+            if (buffer.size() > 0)
+                copyIn.writeToCopy(buffer.toByteArray(), 0, buffer.size());
+            copyIn.endCopy();
+        } finally {
+            if (copyIn.isActive())
+                copyIn.cancelCopy();
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(UPSERT_STAGING);
+        }
+        return copied;
+    }
+
+    static long batch(Connection connection, Stream<Map.Entry<String, Float>> rows, int batchSize) throws SQLException {
+        long sent = 0;
+        try (PreparedStatement statement = connection.prepareStatement(UPSERT_ROW)) {
+            Iterator<Map.Entry<String, Float>> iterator = rows.iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Float> row = iterator.next();
+                statement.setString(1, row.getKey());
+                statement.setFloat(2, row.getValue());
+                statement.addBatch();
+                if (++sent % batchSize == 0)
+                    statement.executeBatch();
+            }
+            if (sent % batchSize != 0)
+                statement.executeBatch();
+        }
+        return sent;
+    }
+
+    @Override
+    public String getName() {
+        return "database";
+    }
+
+    // escapes a value for the text format of COPY.
+    static String copyText(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\':
+                    escaped.append("\\\\");
+                    break;
+                case '\t':
+                    escaped.append("\\t");
+                    break;
+                case '\n':
+                    escaped.append("\\n");
+                    break;
+                case '\r':
+                    escaped.append("\\r");
+                    break;
+                default:
+                    escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,69 @@
+package base.repository;
+
+import base.domain.PropertyRank;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the rank in the file sparqlear.propertyRank.file, written as the table of {@link PropertyRank} and mapped in
+ * memory to load it, so the rank is available at startup without a database or rebuilding it.
+ */
+@Component
+@ConditionalOnProperty(name = "sparqlear.propertyRank.store", havingValue = "file")
+public class FileRankStore implements RankStore {
+    private final Logger logger = Logger.getLogger(FileRankStore.class.getName());
+
+    @Value("${sparqlear.propertyRank.file}")
+    private String file;
+
+    private Path rankFile;
+
+    @PostConstruct
+    private void init() {
+        if (file.trim().isEmpty())
+            throw new IllegalArgumentException("sparqlear.propertyRank.file must be set to store the rank in a file.");
+        rankFile = Paths.get(file.trim());
+    }
+
+    @Override
+    public PropertyRank load() throws IOException {
+        if (!Files.exists(rankFile))
+            throw new IOException("There is no rank file at " + rankFile + " to load the ranked properties from, import a rank with sparqlear.rankImport.file or sparqlear.rankImport.dumps to create it.");
+        return PropertyRank.map(rankFile);
+    }
+
+    /**
+     * Rewrites the file with the rows merged into the rank already stored, so the rank is built in memory.
+     */
+    @Override
+    public synchronized long save(Stream<Map.Entry<String, Float>> rows) throws IOException {
+        PropertyRank.Builder builder = new PropertyRank.Builder();
+        // the first rank saved creates the file
+        if (Files.exists(rankFile))
+            load().forEach(builder::add);
+        long[] saved = new long[1];
+        rows.forEach(row -> {
+            builder.add(row.getKey(), row.getValue());
+            saved[0]++;
+        });
+        builder.build().write(rankFile);
+        logger.log(Level.INFO, saved[0] + " ranked properties saved in " + rankFile + ".");
+        return saved[0];
+    }
+
+    @Override
+    public String getName() {
+        return rankFile.toString();
+    }
+}
@@ -1,8 +1,24 @@
 package base.repository;
 
 import base.domain.Property;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 
+import javax.persistence.QueryHint;
+import java.util.stream.Stream;
+
 
 public interface PropertyRepository extends CrudRepository<Property, Long> {
+
+    /**
+     * Streams the weights of all the properties, without loading them as entities. It must be called within a
+     * transaction, and the stream closed afterwards.
+     */
+    @Query("select p.label as label, p.weight as weight from Property p")
+    @QueryHints({
+            @QueryHint(name = "org.hibernate.fetchSize", value = "10000"),
+            @QueryHint(name = "org.hibernate.readOnly", value = "true")
+    })
+    Stream<PropertyWeight> streamWeights();
 }
@@ -0,0 +1,10 @@
+package base.repository;
+
+/**
+ * Projection of a {@link base.domain.Property} to the columns of the rank.
+ */
+public interface PropertyWeight {
+    String getLabel();
+
+    float getWeight();
+}
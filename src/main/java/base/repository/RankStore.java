@@ -0,0 +1,32 @@
+package base.repository;
+
+import base.domain.PropertyRank;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the weights of the ranked properties, either in the Property table of the database or in an embedded file.
+ */
+public interface RankStore {
+    /**
+     * Reads the whole rank.
+     *
+     * @return the rank stored.
+     * @throws IOException if it can't be read, or there is nowhere to read it from.
+     */
+    PropertyRank load() throws IOException;
+
+    /**
+     * Stores the weights of the properties, replacing the weights of the properties already ranked.
+     *
+     * @return the amount of rows stored.
+     */
+    long save(Stream<Map.Entry<String, Float>> rows) throws IOException;
+
+    /**
+     * Identifies where the rank is stored, for the logs.
+     */
+    String getName();
+}
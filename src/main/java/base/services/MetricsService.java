@@ -0,0 +1,119 @@
+package base.services;
+
+import io.micrometer.core.instrument.*;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Records how long each stage of the learning takes and how much work it sends to the endpoint, in the meter
+ * registry of the application.
+ */
+@Service
+public class MetricsService {
+    public static final String STAGE_PARSE = "parse";
+    public static final String STAGE_DERIVATION = "derivation";
+    public static final String STAGE_FILTERING = "filtering";
+    public static final String STAGE_VARIABLES = "variables";
+    public static final String STAGE_SEARCH = "search";
+
+    public static final String QUERY_NEIGHBOURHOOD = "neighbourhood";
+    public static final String QUERY_ASK = "ask";
+    public static final String QUERY_VALUES = "values";
+    public static final String QUERY_SELECT = "select";
+
+    public static final String COMBINATION_VERIFIED = "verified";
+    public static final String COMBINATION_PRUNED = "pruned";
+    public static final String COMBINATION_DISCARDED = "discarded";
+
+    @Resource
+    private MeterRegistry meterRegistry;
+    @Resource
+    private TriplesCacheService triplesCacheService;
+    // registered once, as it is counted for every chunk of every response.
+    private Counter responseBytes;
+
+    @PostConstruct
+    private void init() {
+        responseBytes = Counter.builder("sparqlear.sparql.response.bytes")
+                .baseUnit("bytes")
+                .description("Bytes of the query results received from the endpoint")
+                .register(meterRegistry);
+        FunctionCounter.builder("sparqlear.cache.requests", triplesCacheService, TriplesCacheService::getHits)
+                .tag("result", "hit")
+                .description("Lookups of derived triples in the cache")
+                .register(meterRegistry);
+        FunctionCounter.builder("sparqlear.cache.requests", triplesCacheService, TriplesCacheService::getMisses)
+                .tag("result", "miss")
+                .description("Lookups of derived triples in the cache")
+                .register(meterRegistry);
+        Gauge.builder("sparqlear.cache.entries", triplesCacheService, TriplesCacheService::getEntries)
+                .description("Entries stored in the derived triples cache")
+                .register(meterRegistry);
+    }
+
+    public Timer.Sample startStage() {
+        return Timer.start(meterRegistry);
+    }
+
+    /**
+     * @return the duration of the stage, in milliseconds.
+     */
+    public long stopStage(Timer.Sample sample, String stage) {
+        long nanoseconds = sample.stop(Timer.builder("sparqlear.learn.stage")
+                .tag("stage", stage)
+                .description("Duration of the stages of the learning")
+                .register(meterRegistry));
+        return TimeUnit.NANOSECONDS.toMillis(nanoseconds);
+    }
+
+    public void countQuery(String type) {
+        meterRegistry.counter("sparqlear.sparql.queries", "type", type).increment();
+    }
+
+    public void countRows(String type, long rows) {
+        DistributionSummary.builder("sparqlear.sparql.rows")
+                .tag("type", type)
+                .description("Rows received per query")
+                .register(meterRegistry)
+                .record(rows);
+    }
+
+    /**
+     * @param bytes amount of bytes received from the endpoint, before decompressing them.
+     */
+    public void countResponseBytes(long bytes) {
+        responseBytes.increment(bytes);
+    }
+
+    /**
+     * @param limit the amount of queries currently allowed in flight to the endpoint.
+     */
+    public void registerConcurrencyLimit(Supplier<Number> limit) {
+        Gauge.builder("sparqlear.sparql.concurrency.limit", limit)
+                .description("Queries allowed in flight to the endpoint")
+                .register(meterRegistry);
+    }
+
+    public void countRetry() {
+        meterRegistry.counter("sparqlear.sparql.retries").increment();
+    }
+
+    /**
+     * Counts a query failed without sending it, because the endpoint failed repeatedly.
+     */
+    public void countRejectedQuery() {
+        meterRegistry.counter("sparqlear.sparql.rejected").increment();
+    }
+
+    public void countCombinations(String outcome, long amount) {
+        meterRegistry.counter("sparqlear.bgp.combinations", "outcome", outcome).increment(amount);
+    }
+
+    public MeterRegistry getMeterRegistry() {
+        return meterRegistry;
+    }
+}
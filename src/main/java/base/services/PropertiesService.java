@@ -1,25 +1,115 @@
 package base.services;
 
-import base.domain.Property;
-import base.repository.PropertyRepository;
+import base.domain.PropertyRank;
+import base.learners.TripleFinder;
+import base.repository.RankStore;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
-import java.util.Hashtable;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Holds the rank of the properties, loaded from the {@link RankStore} once at startup and, optionally, reloaded in
+ * the background every sparqlear.propertyRank.refreshMinutes. The rank is replaced at once when a reload finishes, so
+ * the readers never wait for it and never see it half loaded.
+ */
 @Service
 public class PropertiesService {
     private final Logger logger = Logger.getLogger(PropertiesService.class.getName());
+    @Value("${sparqlear.verifyPredicatesRank}")
+    private Boolean verifyPredicatesRank;
+    @Value("${sparqlear.tripleFinder.frontier}")
+    private String frontier;
+    @Value("${sparqlear.propertyRank.refreshMinutes}")
+    private long refreshMinutes;
+    @Value("${sparqlear.rankImport.file}")
+    private String importFile;
+    @Value("${sparqlear.rankImport.dumps}")
+    private String importDumps;
     @Resource
-    private PropertyRepository propertyRepository;
-
-    public Hashtable<Integer, Property> loadProperties() {
-        logger.log(Level.INFO, "Loading ranked properties...");
-        Hashtable<Integer, Property> rankedProperties = new Hashtable<>();
-        propertyRepository.findAll().forEach(property -> rankedProperties.put(property.hashCode(), property));
-        logger.log(Level.INFO, "Ranked properties successfully loaded.");
-        return rankedProperties;
+    private RankStore rankStore;
+
+    private volatile PropertyRank rank = PropertyRank.EMPTY;
+    private ScheduledExecutorService refreshExecutor;
+
+    @PostConstruct
+    private void init() {
+        if (!isRankUsed())
+            return;
+
+        // without the rank the learned queries would silently change, so the startup fails instead. When a rank is
+        // imported at startup, it may not be stored yet and RankImportRunner loads it once imported.
+        boolean importing = !(importFile.trim().isEmpty() && importDumps.replace(",", "").trim().isEmpty());
+        if (!importing) {
+            try {
+                load();
+            } catch (IOException | RuntimeException e) {
+                throw new IllegalStateException("The ranked properties could not be loaded from " + rankStore.getName() + ".", e);
+            }
+        }
+        if (refreshMinutes > 0) {
+            refreshExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "sparqlear-rank-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            refreshExecutor.scheduleWithFixedDelay(this::loadProperties, refreshMinutes, refreshMinutes, TimeUnit.MINUTES);
+        }
+    }
+
+    @PreDestroy
+    private void shutdown() {
+        if (null != refreshExecutor)
+            refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * @return true if the rank is loaded, as it prunes the triples or, for the best-first crawl, orders them.
+     */
+    public boolean isRankUsed() {
+        return verifyPredicatesRank || TripleFinder.FRONTIER_BEST_FIRST.equals(frontier);
+    }
+
+    /**
+     * @return the rank last loaded, empty if it was not loaded.
+     */
+    public PropertyRank getRank() {
+        return rank;
+    }
+
+    /**
+     * Reads the rank from the store and replaces the current one with it.
+     *
+     * @throws IOException if the rank can't be read, the current one is kept then.
+     */
+    public void load() throws IOException {
+        rank = read();
+    }
+
+    /**
+     * Same as {@link #load()}, but if the rank can't be read the failure is only logged, for the background reloads.
+     */
+    public void loadProperties() {
+        try {
+            load();
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.SEVERE, "The ranked properties could not be loaded from " + rankStore.getName() + ", the current rank is kept.", e);
+        }
+    }
+
+    private PropertyRank read() throws IOException {
+        logger.log(Level.INFO, "Loading ranked properties from " + rankStore.getName() + "...");
+        long start = System.currentTimeMillis();
+        PropertyRank loaded = rankStore.load();
+        logger.log(Level.INFO, loaded.size() + " ranked properties successfully loaded in " + (System.currentTimeMillis() - start) + " ms.");
+        return loaded;
     }
 }
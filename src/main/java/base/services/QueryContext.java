@@ -0,0 +1,96 @@
+package base.services;
+
+import org.apache.jena.query.QueryExecution;
+
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Tracks the queries sent on behalf of one learning request, so they get its timeout and can all be aborted when
+ * the request is cancelled.
+ *
+ * The context of the current thread is propagated to the tasks submitted to {@link QueryExecutionService}.
+ */
+public class QueryContext {
+    private static final ThreadLocal<QueryContext> CURRENT = new ThreadLocal<>();
+
+    private final long queryTimeoutMillis;
+    private final Set<QueryExecution> executions = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled = false;
+
+    /**
+     * @param queryTimeoutMillis timeout of each query, or zero to keep the timeout of the backend.
+     */
+    public QueryContext(long queryTimeoutMillis) {
+        this.queryTimeoutMillis = queryTimeoutMillis;
+    }
+
+    /**
+     * @return the context of the current thread, or null if the thread does not run on behalf of a request.
+     */
+    public static QueryContext current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds a context to the current thread.
+     *
+     * @return the context previously bound, to be restored afterwards.
+     */
+    public static QueryContext attach(QueryContext context) {
+        QueryContext previous = CURRENT.get();
+        if (null == context)
+            CURRENT.remove();
+        else
+            CURRENT.set(context);
+        return previous;
+    }
+
+    /**
+     * @throws CancellationException if the request of the current thread was cancelled.
+     */
+    public static void checkCancelled() {
+        QueryContext context = CURRENT.get();
+        if ((null != context) && context.cancelled)
+            throw new CancellationException("The learning request was cancelled.");
+    }
+
+    /**
+     * Hands the execution to the handler, applying the timeout of the current context and aborting the query if the
+     * context is cancelled meanwhile.
+     */
+    public static <T> T execute(QueryExecution qexec, Function<QueryExecution, T> handler) {
+        QueryContext context = CURRENT.get();
+        if (null == context)
+            return handler.apply(qexec);
+
+        checkCancelled();
+        if (context.queryTimeoutMillis > 0)
+            qexec.setTimeout(context.queryTimeoutMillis, TimeUnit.MILLISECONDS);
+        context.executions.add(qexec);
+        try {
+            // the context may have been cancelled before the execution was registered.
+            if (context.cancelled)
+                qexec.abort();
+            return handler.apply(qexec);
+        } finally {
+            context.executions.remove(qexec);
+        }
+    }
+
+    /**
+     * Aborts the queries in flight and makes the following ones fail.
+     */
+    public void cancel() {
+        cancelled = true;
+        for (QueryExecution qexec : executions)
+            qexec.abort();
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
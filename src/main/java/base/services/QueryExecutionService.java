@@ -0,0 +1,113 @@
+package base.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Application-scoped executor for the SPARQL queries sent to the endpoint.
+ *
+ * The queries are blocking HTTP calls, so the pool is sized by the amount of concurrent requests the endpoint
+ * accepts instead of by the number of cores. Submissions block once the in-flight and pending queries reach the
+ * configured bounds, which keeps a saturated endpoint from piling up work in memory.
+ *
+ * Tasks submitted here must not submit and wait on other tasks of this service, otherwise they may starve the pool.
+ */
+@Service
+public class QueryExecutionService {
+    private final Logger logger = Logger.getLogger(QueryExecutionService.class.getName());
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 30;
+
+    @Value("${sparqlear.sparql.maxConcurrentQueries}")
+    private int maxConcurrentQueries;
+    @Value("${sparqlear.sparql.maxPendingQueries}")
+    private int maxPendingQueries;
+
+    private ThreadPoolExecutor executor;
+    private Semaphore permits;
+
+    @PostConstruct
+    private void init() {
+        if (maxConcurrentQueries < 1)
+            throw new IllegalArgumentException("sparqlear.sparql.maxConcurrentQueries must be greater than zero.");
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(maxConcurrentQueries, maxConcurrentQueries, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "sparql-query-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        permits = new Semaphore(maxConcurrentQueries + Math.max(0, maxPendingQueries));
+    }
+
+    /**
+     * Schedules a query task, blocking the caller while the endpoint is saturated. The task runs within the
+     * {@link QueryContext} of the caller, and is not run at all if that context is cancelled meanwhile.
+     *
+     * @param task the task running the query.
+     * @return a future completed with the result of the task.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        QueryContext context = QueryContext.current();
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return future;
+        }
+
+        try {
+            executor.execute(() -> {
+                QueryContext previous = QueryContext.attach(context);
+                try {
+                    QueryContext.checkCancelled();
+                    future.complete(task.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    QueryContext.attach(previous);
+                    permits.release();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            permits.release();
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * Waits for a submitted task, rethrowing the unchecked exceptions raised by the query itself.
+     */
+    public static <T> T await(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw e;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        logger.log(Level.INFO, "Shutting down the query executor...");
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS))
+                executor.shutdownNow();
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package base.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.Resource;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+/**
+ * Imports the properties rank at startup when sparqlear.rankImport.file or sparqlear.rankImport.dumps are set, and
+ * reloads the rank afterwards so the learning uses the new weights.
+ */
+@Component
+public class RankImportRunner implements ApplicationRunner {
+    private final Logger logger = Logger.getLogger(RankImportRunner.class.getName());
+    @Value("${sparqlear.rankImport.file}")
+    private String file;
+    @Value("${sparqlear.rankImport.dumps}")
+    private String dumps;
+    @Resource
+    private RankImportService rankImportService;
+    @Resource
+    private PropertiesService propertiesService;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        List<String> dumpList = Arrays.stream(dumps.split(","))
+                .map(String::trim)
+                .filter(dump -> !dump.isEmpty())
+                .collect(Collectors.toList());
+        if (file.trim().isEmpty() && dumpList.isEmpty())
+            return;
+
+        if (!file.trim().isEmpty()) {
+            logger.log(Level.INFO, "Importing the ranked properties from " + file + "...");
+            rankImportService.importRanking(Paths.get(file.trim()));
+        }
+        if (!dumpList.isEmpty()) {
+            logger.log(Level.INFO, "Weighing the predicates of " + dumpList + "...");
+            rankImportService.importWeights(dumpList);
+        }
+        if (propertiesService.isRankUsed())
+            propertiesService.load();
+    }
+}
@@ -0,0 +1,173 @@
+package base.services;
+
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.sparql.core.Quad;
+import base.repository.RankStore;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.Resource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * Bulk import of the properties rank into the {@link RankStore}, from a TSV or CSV file of (property IRI, weight) rows
+ * or from the frequency of the predicates in RDF dumps. The rows of a file are streamed to the store as they are read,
+ * and the properties already ranked get their new weight.
+ */
+@Service
+@Lazy
+public class RankImportService {
+    private final Logger logger = Logger.getLogger(RankImportService.class.getName());
+    @Resource
+    private RankStore rankStore;
+
+    /**
+     * Imports the rows of a ranking file. The rows are separated by tabs, or by commas if the file name ends in .csv,
+     * and a first row whose weight is not a number is taken as a header.
+     *
+     * @return the amount of rows imported.
+     */
+    public long importRanking(Path file) throws IOException {
+        char delimiter = file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? ',' : '\t';
+        AtomicLong lineNumber = new AtomicLong();
+        try (Stream<String> lines = Files.lines(file, StandardCharsets.UTF_8)) {
+            return rankStore.save(lines.map(row -> {
+                long number = lineNumber.incrementAndGet();
+                if (row.trim().isEmpty())
+                    return null;
+                Map.Entry<String, Float> entry = parseRow(row, delimiter);
+                if ((null == entry) && (number > 1))
+                    throw new IllegalArgumentException("Invalid ranking row " + number + " in " + file + ": " + row);
+                return entry;
+            }).filter(Objects::nonNull));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Weighs the predicates of the dumps by their frequency and imports the weights.
+     *
+     * @return the amount of predicates imported.
+     */
+    public long importWeights(List<String> dumps) throws IOException {
+        return rankStore.save(computeWeights(dumps).entrySet().stream());
+    }
+
+    /**
+     * Counts the triples of each predicate in the dumps, parsing each dump in its own thread. The weight of a
+     * predicate is the logarithm of its frequency over that of the most frequent predicate, so the weights are between
+     * 0 and 1 and the predicates of the long tail get the lowest ones.
+     */
+    public Map<String, Float> computeWeights(List<String> dumps) throws IOException {
+        if (dumps.isEmpty())
+            return Collections.emptyMap();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(dumps.size(), Runtime.getRuntime().availableProcessors()), runnable -> {
+            Thread thread = new Thread(runnable, "sparqlear-rank-dump-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        Map<String, Long> frequencies = new HashMap<>();
+        try {
+            List<Future<Map<String, Long>>> counts = new ArrayList<>();
+            for (String dump : dumps)
+                counts.add(executor.submit(() -> countPredicates(dump)));
+            for (Future<Map<String, Long>> count : counts)
+                count.get().forEach((predicate, frequency) -> frequencies.merge(predicate, frequency, Long::sum));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("The weighing of the dumps was interrupted.");
+        } catch (ExecutionException e) {
+            throw new IOException("The dumps could not be parsed: " + e.getCause().getMessage(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        long maxFrequency = frequencies.values().stream().mapToLong(Long::longValue).max().orElse(1);
+        Map<String, Float> weights = new HashMap<>();
+        frequencies.forEach((predicate, frequency) -> weights.put(predicate, (float) (Math.log1p(frequency) / Math.log1p(maxFrequency))));
+        logger.log(Level.INFO, weights.size() + " predicates weighed from " + dumps.size() + " dumps.");
+        return weights;
+    }
+
+    private static Map<String, Long> countPredicates(String dump) {
+        Map<String, long[]> counts = new HashMap<>();
+        RDFParser.source(dump).parse(new StreamRDFBase() {
+            @Override
+            public void triple(Triple triple) {
+                count(triple.getPredicate());
+            }
+
+            @Override
+            public void quad(Quad quad) {
+                count(quad.getPredicate());
+            }
+
+            private void count(Node predicate) {
+                counts.computeIfAbsent(predicate.getURI(), uri -> new long[1])[0]++;
+            }
+        });
+
+        Map<String, Long> frequencies = new HashMap<>();
+        counts.forEach((predicate, count) -> frequencies.put(predicate, count[0]));
+        return frequencies;
+    }
+
+    /**
+     * @return the label and weight of a ranking row, or null if the row is empty or its weight is not a number.
+     */
+    static Map.Entry<String, Float> parseRow(String row, char delimiter) {
+        List<String> fields = new ArrayList<>(2);
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < row.length(); i++) {
+            char c = row.charAt(i);
+            if (quoted) {
+                if (c != '"')
+                    field.append(c);
+                else if ((i + 1 < row.length()) && (row.charAt(i + 1) == '"'))
+                    field.append(row.charAt(++i));
+                else
+                    quoted = false;
+            } else if ((c == '"') && (delimiter == ','))
+                quoted = true;
+            else if (c == delimiter) {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else
+                field.append(c);
+        }
+        fields.add(field.toString().trim());
+        if (fields.size() < 2)
+            return null;
+
+        String label = fields.get(0);
+        // the IRIs may come written as in N-Triples
+        if (label.startsWith("<") && label.endsWith(">"))
+            label = label.substring(1, label.length() - 1);
+        try {
+            float weight = Float.parseFloat(fields.get(1));
+            return (label.isEmpty() || Float.isNaN(weight)) ? null : new AbstractMap.SimpleImmutableEntry<>(label, weight);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
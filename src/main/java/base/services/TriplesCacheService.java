@@ -0,0 +1,210 @@
+package base.services;
+
+import org.apache.jena.graph.Triple;
+import org.apache.jena.riot.Lang;
+import org.apache.jena.riot.RDFFormat;
+import org.apache.jena.riot.RDFParser;
+import org.apache.jena.riot.system.StreamRDF;
+import org.apache.jena.riot.system.StreamRDFBase;
+import org.apache.jena.riot.system.StreamRDFWriter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Persistent cache of the triples derived for an example, so consecutive learning runs over similar examples do not
+ * send the same neighbourhood queries to the endpoint again.
+ *
+ * Each entry is stored in its own RDF Thrift file named after the digest of its key. Entries expire after the
+ * configured time to live, and the oldest ones are evicted when the cache grows over the configured amount of entries.
+ */
+@Service
+public class TriplesCacheService {
+    private final Logger logger = Logger.getLogger(TriplesCacheService.class.getName());
+    private static final String ENTRY_EXTENSION = ".trdf";
+    private static final double EVICTION_RATIO = 0.9;
+
+    @Value("${sparqlear.cache.enabled}")
+    private Boolean enabled;
+    @Value("${sparqlear.cache.directory}")
+    private String directory;
+    @Value("${sparqlear.cache.ttlMinutes}")
+    private long ttlMinutes;
+    @Value("${sparqlear.cache.maxEntries}")
+    private int maxEntries;
+
+    private Path cacheDirectory;
+    private final AtomicInteger entries = new AtomicInteger();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    @PostConstruct
+    private void init() {
+        if (!enabled)
+            return;
+
+        try {
+            cacheDirectory = Files.createDirectories(Paths.get(directory));
+            try (Stream<Path> files = listEntries()) {
+                entries.set((int) files.count());
+            }
+            logger.log(Level.INFO, "Derived triples cache opened at " + cacheDirectory + " with " + entries.get() + " entries.");
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "The derived triples cache could not be opened at " + directory + ", it will be disabled.", e);
+            enabled = false;
+        }
+    }
+
+    /**
+     * Builds the key identifying the results of a derivation query.
+     *
+     * @param role the role performed by the example in the query (subject, predicate or object).
+     */
+    public static String key(String endpoint, Optional<String> dataset, String example, byte role, int limit, int offset) {
+        return endpoint + '\n' + dataset.orElse("") + '\n' + example + '\n' + role + '\n' + limit + '\n' + offset;
+    }
+
+    /**
+     * @return the triples of the rows of the query, in the order they were put.
+     */
+    public Optional<List<Triple>> get(String key) {
+        if (!enabled)
+            return Optional.empty();
+
+        Path entry = entryPath(key);
+        try {
+            FileTime lastModified = Files.getLastModifiedTime(entry);
+            if (isExpired(lastModified)) {
+                if (Files.deleteIfExists(entry))
+                    entries.decrementAndGet();
+                misses.incrementAndGet();
+                return Optional.empty();
+            }
+
+            List<Triple> triples = new ArrayList<>();
+            StreamRDF collector = new StreamRDFBase() {
+                @Override
+                public void triple(Triple triple) {
+                    triples.add(triple);
+                }
+            };
+            RDFParser.create().source(entry).lang(Lang.RDFTHRIFT).parse(collector);
+            hits.incrementAndGet();
+            return Optional.of(triples);
+        } catch (NoSuchFileException e) {
+            misses.incrementAndGet();
+            return Optional.empty();
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Discarding unreadable cache entry " + entry, e);
+            try {
+                if (Files.deleteIfExists(entry))
+                    entries.decrementAndGet();
+            } catch (IOException ignored) {
+            }
+            misses.incrementAndGet();
+            return Optional.empty();
+        }
+    }
+
+    public void put(String key, List<Triple> triples) {
+        if (!enabled)
+            return;
+
+        Path entry = entryPath(key);
+        try {
+            Path temporary = Files.createTempFile(cacheDirectory, "entry", ".tmp");
+            try (OutputStream out = Files.newOutputStream(temporary)) {
+                StreamRDF writer = StreamRDFWriter.getWriterStream(out, RDFFormat.RDF_THRIFT);
+                writer.start();
+                triples.forEach(writer::triple);
+                writer.finish();
+            }
+            boolean existed = Files.exists(entry);
+            Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            if ((!existed) && (entries.incrementAndGet() > maxEntries))
+                evict();
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "The derived triples could not be cached.", e);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public int getEntries() {
+        return entries.get();
+    }
+
+    private boolean isExpired(FileTime lastModified) {
+        return (ttlMinutes > 0) && (System.currentTimeMillis() - lastModified.toMillis() > TimeUnit.MINUTES.toMillis(ttlMinutes));
+    }
+
+    // removes the expired entries and then the oldest ones, until the cache is back under its size bound.
+    private synchronized void evict() {
+        if (entries.get() <= maxEntries)
+            return;
+
+        try (Stream<Path> files = listEntries()) {
+            List<Path> sortedEntries = files
+                    .sorted(Comparator.comparing(this::lastModifiedMillis))
+                    .collect(Collectors.toList());
+
+            int target = (int) (maxEntries * EVICTION_RATIO);
+            int remaining = sortedEntries.size();
+            for (Path entry : sortedEntries) {
+                if ((remaining <= target) && !isExpired(FileTime.fromMillis(lastModifiedMillis(entry))))
+                    break;
+                if (Files.deleteIfExists(entry))
+                    remaining--;
+            }
+            entries.set(remaining);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "The derived triples cache could not be evicted.", e);
+        }
+    }
+
+    private long lastModifiedMillis(Path entry) {
+        try {
+            return Files.getLastModifiedTime(entry).toMillis();
+        } catch (IOException e) {
+            return 0L;
+        }
+    }
+
+    private Stream<Path> listEntries() throws IOException {
+        return Files.list(cacheDirectory).filter(path -> path.toString().endsWith(ENTRY_EXTENSION));
+    }
+
+    Path entryPath(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder name = new StringBuilder();
+            for (byte b : digest)
+                name.append(String.format("%02x", b));
+            return cacheDirectory.resolve(name.append(ENTRY_EXTENSION).toString());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -3,8 +3,19 @@ package base.utils;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 
 public class CombinationsUtil {
+    /**
+     * Maximum amount of elements that {@link #combinations(int, int)} can enumerate, each subset is a bit of a long.
+     */
+    public static final int MAX_ELEMENTS = 62;
+
+    /**
+     * @deprecated materializes every subset as a String and stops after a million of them, use {@link #combinations(int, int)} instead.
+     */
+    @Deprecated
     public static List<List<String>> generateCombinations(int n) {
         int count = 0;
         List<List<String>> combinations = new ArrayList<>();
@@ -29,4 +40,62 @@ public class CombinationsUtil {
         }
         return combinations;
     }
+
+    /**
+     * Lazily enumerates the non-empty subsets of {0, ..., n - 1} as bitmasks, where bit i is set when element i is
+     * included. Subsets come by increasing size starting at minSize, and in increasing numeric order within each size.
+     *
+     * @param n       amount of elements, at most {@link #MAX_ELEMENTS}.
+     * @param minSize size of the first subsets to enumerate.
+     */
+    public static PrimitiveIterator.OfLong combinations(int n, int minSize) {
+        if ((n < 0) || (n > MAX_ELEMENTS))
+            throw new IllegalArgumentException("Only up to " + MAX_ELEMENTS + " elements can be combined, got " + n + ".");
+        return new CombinationsIterator(n, Math.max(1, minSize));
+    }
+
+    /**
+     * Amount of elements included in a subset produced by {@link #combinations(int, int)}.
+     */
+    public static int size(long combination) {
+        return Long.bitCount(combination);
+    }
+
+    private static class CombinationsIterator implements PrimitiveIterator.OfLong {
+        private final int n;
+        private final long limit;
+        private int size;
+        private long next;
+
+        private CombinationsIterator(int n, int size) {
+            this.n = n;
+            this.limit = 1L << n;
+            this.size = size;
+            this.next = firstOfSize(size);
+        }
+
+        @Override
+        public boolean hasNext() {
+            return size <= n;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext())
+                throw new NoSuchElementException();
+
+            long current = next;
+            // Gosper's hack: the next larger number with the same amount of bits set.
+            long lowestBit = current & -current;
+            long ripple = current + lowestBit;
+            next = (((ripple ^ current) >>> 2) / lowestBit) | ripple;
+            if (next >= limit)
+                next = firstOfSize(++size);
+            return current;
+        }
+
+        private static long firstOfSize(int size) {
+            return (1L << size) - 1;
+        }
+    }
 }
@@ -0,0 +1,62 @@
+package base.utils;
+
+import java.util.Optional;
+
+/**
+ * Position reached in the results of each of the queries deriving the triples of an item, one per role performed by
+ * the item (subject, predicate or object). The next page of a role starts where the previous one ended, and a role
+ * is not queried again once a page comes back with less rows than requested.
+ */
+public class DerivationCursor {
+    private final String item;
+    private final Optional<String> dataset;
+    // indexed by the selectors of DeriveTriplesQueryExecutor.
+    private final int[] offsets = new int[4];
+    private final boolean[] exhausted = new boolean[4];
+
+    public DerivationCursor(String item, Optional<String> dataset, int offset) {
+        this.item = item;
+        this.dataset = dataset;
+        for (byte selector : UtilsJena.DERIVATION_SELECTORS)
+            offsets[selector] = offset;
+    }
+
+    public String getItem() {
+        return item;
+    }
+
+    public Optional<String> getDataset() {
+        return dataset;
+    }
+
+    public synchronized int getOffset(byte selector) {
+        return offsets[selector];
+    }
+
+    public synchronized boolean isExhausted(byte selector) {
+        return exhausted[selector];
+    }
+
+    /**
+     * @return true once every role was read to the end.
+     */
+    public synchronized boolean isExhausted() {
+        for (byte selector : UtilsJena.DERIVATION_SELECTORS) {
+            if (!exhausted[selector])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Moves the role past a page of results.
+     *
+     * @param rows  amount of rows returned in the page.
+     * @param limit amount of rows requested for the page.
+     */
+    synchronized void advance(byte selector, int rows, int limit) {
+        offsets[selector] += rows;
+        if (rows < limit)
+            exhausted[selector] = true;
+    }
+}
@@ -1,136 +1,108 @@
 package base.utils;
 
+import base.backends.QueryBackend;
+import base.services.MetricsService;
+import base.services.TriplesCacheService;
 import org.apache.commons.validator.routines.UrlValidator;
 import org.apache.jena.graph.Node;
 import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.graph.Triple;
 import org.apache.jena.query.*;
 
-import java.util.HashSet;
-import java.util.Set;
-import java.util.concurrent.RecursiveTask;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Callable;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-public class DeriveTriplesQueryExecutor extends RecursiveTask<Set<Triple>> {
+/**
+ * Runs one of the queries deriving the triples where an example appears, according to the role performed by the
+ * example (subject, predicate or object). The triples come one per row, in the order returned by the endpoint, so
+ * the rows repeating a triple are kept and the position reached in the results can be told.
+ */
+public class DeriveTriplesQueryExecutor implements Callable<List<Triple>> {
     private final Logger logger = Logger.getLogger(DeriveTriplesQueryExecutor.class.getName());
-    public static final byte NONE_SELECTOR = 0;
+    public static final byte SUBJECT_SELECTOR = 1;
+    public static final byte PREDICATE_SELECTOR = 2;
+    public static final byte OBJECT_SELECTOR = 3;
 
-    private String endpoint;
-    private String exampleSubjectQuery;
-    private String examplePredicateQuery;
-    private String exampleObjectQuery;
+    private QueryBackend queryBackend;
+    private String query;
     private String example;
 
     private byte selector;
+    private TriplesCacheService cache;
+    private String cacheKey;
+    private MetricsService metrics;
 
-    @Override
-    protected Set<Triple> compute() {
-        Set<Triple> results;
-        final byte SUBJECT_SELECTOR = 1;
-        final byte PREDICATE_SELECTOR = 2;
-        final byte OBJECT_SELECTOR = 3;
-        switch (selector) {
-            case NONE_SELECTOR: {
-                break;
-            }
-            case SUBJECT_SELECTOR: {
-                return runSubjectQuery();
-            }
-            case PREDICATE_SELECTOR: {
-                return runPredicateQuery();
-            }
-            case OBJECT_SELECTOR: {
-                return runObjectQuery();
-            }
-        }
-
-        DeriveTriplesQueryExecutor subjectQueryTask = new DeriveTriplesQueryExecutor(endpoint, exampleSubjectQuery, examplePredicateQuery, exampleObjectQuery, example, SUBJECT_SELECTOR);
-        DeriveTriplesQueryExecutor predicateQueryTask = new DeriveTriplesQueryExecutor(endpoint, exampleSubjectQuery, examplePredicateQuery, exampleObjectQuery, example, PREDICATE_SELECTOR);
-        DeriveTriplesQueryExecutor objectQueryTask = new DeriveTriplesQueryExecutor(endpoint, exampleSubjectQuery, examplePredicateQuery, exampleObjectQuery, example, OBJECT_SELECTOR);
-
-        subjectQueryTask.fork();
-        predicateQueryTask.fork();
-
-        results = objectQueryTask.compute();
-
-        results.addAll(subjectQueryTask.join());
-        results.addAll(predicateQueryTask.join());
-
-        return results;
-    }
-
-    public DeriveTriplesQueryExecutor(String endpoint, String exampleSubjectQuery, String examplePredicateQuery, String exampleObjectQuery, String example, byte selector) {
-        this.endpoint = endpoint;
-        this.exampleSubjectQuery = exampleSubjectQuery;
-        this.examplePredicateQuery = examplePredicateQuery;
-        this.exampleObjectQuery = exampleObjectQuery;
+    public DeriveTriplesQueryExecutor(QueryBackend queryBackend, String query, String example, byte selector) {
+        this.queryBackend = queryBackend;
+        this.query = query;
         this.example = example;
         this.selector = selector;
     }
 
-    private Set<Triple> runSubjectQuery(){
-        Set<Triple> results = new HashSet<>();
-        try (QueryExecution qexec = QueryExecutionFactory.sparqlService(endpoint, exampleSubjectQuery)) {
-            ResultSet rs = qexec.execSelect();
-            while (rs.hasNext()) {
-                QuerySolution row = rs.next();
-                Node subject = NodeFactory.createLiteral(example);
-                Node predicate = row.get("?p").asNode();
-                Node object = row.get("?o").asNode();
-                Triple triple = new Triple(subject, predicate, object);
-                results.add(triple);
-            }
-        } catch (QueryParseException e){
-            System.out.println("===============================================");
-            logger.log(Level.SEVERE, "Error processing the query: \n" + exampleSubjectQuery + "\n");
-            System.out.println("===============================================");
-        }
-        return results;
+    /**
+     * Executor that looks for the results in the cache before sending the query, caches them afterwards, and records
+     * the queries sent.
+     */
+    public DeriveTriplesQueryExecutor(QueryBackend queryBackend, String query, String example, byte selector, TriplesCacheService cache, String cacheKey, MetricsService metrics) {
+        this(queryBackend, query, example, selector);
+        this.cache = cache;
+        this.cacheKey = cacheKey;
+        this.metrics = metrics;
     }
 
-    private Set<Triple> runPredicateQuery(){
-        Set<Triple> results = new HashSet<>();
+    @Override
+    public List<Triple> call() {
+        List<Triple> results = new ArrayList<>();
         // Only URIs are valid predicates according to the SPARQL specification.
-        if (UrlValidator.getInstance().isValid(example)) {
-            try (QueryExecution qexec = QueryExecutionFactory.sparqlService(endpoint, examplePredicateQuery)) {
+        if ((PREDICATE_SELECTOR == selector) && !UrlValidator.getInstance().isValid(example))
+            return results;
+
+        if (null != cache) {
+            Optional<List<Triple>> cachedResults = cache.get(cacheKey);
+            if (cachedResults.isPresent())
+                return cachedResults.get();
+        }
+
+        try {
+            results = queryBackend.execute(query, qexec -> {
+                List<Triple> triples = new ArrayList<>();
                 ResultSet rs = qexec.execSelect();
                 while (rs.hasNext()) {
-                    QuerySolution row = rs.next();
-                    Node subject = row.get("?s").asNode();
-                    Node predicate = NodeFactory.createLiteral(example);
-                    Node object = row.get("?o").asNode();
-                    Triple triple = new Triple(subject, predicate, object);
-                    results.add(triple);
+                    triples.add(toTriple(rs.next()));
                 }
-            } catch (QueryParseException e){
-                System.out.println("===============================================");
-                logger.log(Level.SEVERE, "Error processing the query: \n" + examplePredicateQuery + "\n");
-                System.out.println("===============================================");
-            }
-        }
-        return results;
-    }
-
-    private Set<Triple> runObjectQuery(){
-        Set<Triple> results = new HashSet<>();
-
-        try (QueryExecution qexec = QueryExecutionFactory.sparqlService(endpoint, exampleObjectQuery)) {
-            ResultSet rs = qexec.execSelect();
-            while (rs.hasNext()) {
-                QuerySolution row = rs.next();
-
-                Node subject = row.get("?s").asNode();
-                Node predicate = row.get("?p").asNode();
-                Node object = NodeFactory.createLiteral(example);
-                Triple triple = new Triple(subject, predicate, object);
-                results.add(triple);
+                return triples;
+            });
+            if (null != metrics) {
+                metrics.countQuery(MetricsService.QUERY_NEIGHBOURHOOD);
+                metrics.countRows(MetricsService.QUERY_NEIGHBOURHOOD, results.size());
             }
+            if (null != cache)
+                cache.put(cacheKey, results);
         } catch (QueryParseException e){
             System.out.println("===============================================");
-            logger.log(Level.SEVERE, "Error processing the query: \n" + exampleObjectQuery + "\n");
+            logger.log(Level.SEVERE, "Error processing the query: \n" + query + "\n");
             System.out.println("===============================================");
+            // returning no rows would be taken as the end of the results
+            throw e;
         }
         return results;
     }
+
+    private Triple toTriple(QuerySolution row) {
+        Node exampleNode = NodeFactory.createLiteral(example);
+        switch (selector) {
+            case SUBJECT_SELECTOR:
+                return new Triple(exampleNode, row.get("?p").asNode(), row.get("?o").asNode());
+            case PREDICATE_SELECTOR:
+                return new Triple(row.get("?s").asNode(), exampleNode, row.get("?o").asNode());
+            case OBJECT_SELECTOR:
+                return new Triple(row.get("?s").asNode(), row.get("?p").asNode(), exampleNode);
+            default:
+                throw new IllegalStateException("Unknown selector: " + selector);
+        }
+    }
 }
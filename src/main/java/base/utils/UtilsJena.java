@@ -1,21 +1,29 @@
 package base.utils;
 
+import base.backends.QueryBackend;
 import base.domain.Example;
+import base.services.MetricsService;
+import base.services.QueryExecutionService;
+import base.services.TriplesCacheService;
 import org.apache.commons.validator.routines.UrlValidator;
 import org.apache.jena.graph.Node;
 import org.apache.jena.graph.NodeFactory;
 import org.apache.jena.graph.Triple;
 import org.apache.jena.query.*;
+import org.apache.jena.rdf.model.RDFNode;
+import org.apache.jena.sparql.util.FmtUtils;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.Resource;
 import java.io.IOException;
 import java.util.*;
-import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 /**
  * @author Leandro Tabares Martín
@@ -26,11 +34,23 @@ import java.util.logging.Logger;
 public class UtilsJena {
     private final Logger logger = Logger.getLogger(UtilsJena.class.getName());
     public static final String SELECTED_VARIABLE_PATTERN = "sv";
+    // the roles an example is derived with, in the order their triples are returned.
+    static final byte[] DERIVATION_SELECTORS = {DeriveTriplesQueryExecutor.OBJECT_SELECTOR, DeriveTriplesQueryExecutor.SUBJECT_SELECTOR, DeriveTriplesQueryExecutor.PREDICATE_SELECTOR};
 
-    @Value("${sparqlear.sparql.endpoint}")
-    private String endpoint;
     @Value("${sparqlear.sparql.timeout}")
     private Integer timeout;
+    @Value("${sparqlear.sparql.verification.batched}")
+    private Boolean batchedVerification;
+    @Value("${sparqlear.sparql.verification.batchSize}")
+    private int verificationBatchSize;
+    @Resource
+    private QueryBackend queryBackend;
+    @Resource
+    private QueryExecutionService queryExecutionService;
+    @Resource
+    private TriplesCacheService triplesCacheService;
+    @Resource
+    private MetricsService metricsService;
 
     /**
      * Method to derive the triples directly related with a example.
@@ -40,45 +60,115 @@ public class UtilsJena {
      * @param limit   Specifies a limit of triples to be retrieved according to the role perfomed by the example (subject, predicate or object).
      * @return Set<Triple> containing the derived triples.
      */
-    public Set deriveTriples(String example, Optional<String> dataset, int limit, int offset) throws IOException {
-        if (!UrlValidator.getInstance().isValid(endpoint))
-            throw new IOException("Invalid endpoint");
+    public Set<Triple> deriveTriples(String example, Optional<String> dataset, int limit, int offset) throws IOException {
+        return QueryExecutionService.await(deriveTriplesAsync(example, dataset, limit, offset));
+    }
 
-        // If the example is an URI it should be between <> or between quotes otherwise.
-        example = getSparqlCompatibleExample(example);
+    /**
+     * Same as {@link #deriveTriples(String, Optional, int, int)}, but returns as soon as the queries are scheduled.
+     *
+     * @return a future completed with the derived triples, in the order returned by the endpoint.
+     */
+    public CompletableFuture<Set<Triple>> deriveTriplesAsync(String example, Optional<String> dataset, int limit, int offset) throws IOException {
+        return deriveTriplesAsync(new DerivationCursor(example, dataset, offset), limit);
+    }
 
-        String exampleSubject, examplePredicate = null, exampleObject;
+    /**
+     * Derives the next page of triples of each role of the cursor not read to the end yet, moving the cursor past them
+     * once they arrive.
+     *
+     * @param limit amount of triples requested per role.
+     * @return a future completed with the derived triples, in the order returned by the endpoint.
+     */
+    public CompletableFuture<Set<Triple>> deriveTriplesAsync(DerivationCursor cursor, int limit) throws IOException {
+        queryBackend.validate();
 
-        if (dataset.isPresent()) {
-            exampleSubject = "SELECT ?p ?o FROM " + dataset.get() + " WHERE {" + example + " ?p ?o .} LIMIT " + limit + " OFFSET " + offset;
+        // If the example is an URI it should be between <> or between quotes otherwise.
+        String example = getSparqlCompatibleExample(cursor.getItem());
+        String from = cursor.getDataset().map(d -> " FROM " + d).orElse("");
+
+        CompletableFuture<Set<Triple>> results = CompletableFuture.completedFuture(new LinkedHashSet<>());
+        for (byte selector : DERIVATION_SELECTORS) {
+            if (cursor.isExhausted(selector))
+                continue;
+
+            int offset = cursor.getOffset(selector);
+            String query;
+            switch (selector) {
+                case DeriveTriplesQueryExecutor.SUBJECT_SELECTOR:
+                    query = "SELECT ?p ?o" + from + " WHERE {" + example + " ?p ?o .} LIMIT " + limit + " OFFSET " + offset;
+                    break;
+                case DeriveTriplesQueryExecutor.PREDICATE_SELECTOR:
+                    // Only URIs are valid predicates according to the SPARQL specification.
+                    query = UrlValidator.getInstance().isValid(UtilsJena.getCanonicalExample(example))
+                            ? "SELECT ?s ?o" + from + " WHERE { ?s " + example + " ?o .} LIMIT " + limit + " OFFSET " + offset
+                            : null;
+                    break;
+                default:
+                    query = "SELECT ?s ?p" + from + " WHERE { ?s ?p " + example + " .} LIMIT " + limit + " OFFSET " + offset;
+            }
+            if (null == query) {
+                cursor.advance(selector, 0, limit);
+                continue;
+            }
 
-            // Only URIs are valid predicates according to the SPARQL specification.
-            if (UrlValidator.getInstance().isValid(example))
-                examplePredicate = "SELECT ?s ?o FROM " + dataset.get() + " WHERE { ?s " + example + " ?o .} LIMIT " + limit + " OFFSET " + offset;
+            // the cursor moves past every row read, including those repeating a triple already in the page
+            CompletableFuture<List<Triple>> page = queryExecutionService.submit(deriveTriplesExecutor(query, example, selector, cursor.getDataset(), limit, offset))
+                    .thenApply(rows -> {
+                        cursor.advance(selector, rows.size(), limit);
+                        return rows;
+                    });
+            results = results.thenCombine(page, (triples, rows) -> {
+                triples.addAll(rows);
+                return triples;
+            });
+        }
 
-            exampleObject = "SELECT ?s ?p FROM " + dataset.get() + " WHERE { ?s ?p " + example + " .} LIMIT " + limit + " OFFSET " + offset;
-        } else {
-            exampleSubject = "SELECT ?p ?o WHERE {" + example + " ?p ?o .} LIMIT " + limit + " OFFSET " + offset;
+        return results;
+    }
 
-            // Only URIs are valid predicates according to the SPARQL specification.
-            if (UrlValidator.getInstance().isValid(UtilsJena.getCanonicalExample(example)))
-                examplePredicate = "SELECT ?s ?o WHERE { ?s " + example + " ?o .} LIMIT " + limit + " OFFSET " + offset;
+    private DeriveTriplesQueryExecutor deriveTriplesExecutor(String query, String example, byte selector, Optional<String> dataset, int limit, int offset) {
+        String cacheKey = TriplesCacheService.key(queryBackend.getName(), dataset, example, selector, limit, offset);
+        return new DeriveTriplesQueryExecutor(queryBackend, query, example, selector, triplesCacheService, cacheKey, metricsService);
+    }
 
-            exampleObject = "SELECT ?s ?p WHERE { ?s ?p " + example + " .} LIMIT " + limit + " OFFSET " + offset;
+    /**
+     * Removes the angle brackets and quotes from an example or from the string form of a node.
+     */
+    public static String getCanonicalExample(String example){
+        StringBuilder canonicalExample = null;
+        for (int i = 0; i < example.length(); i++) {
+            char c = example.charAt(i);
+            boolean removed = (c == '<') || (c == '>') || (c == '\'') || (c == '"');
+            if (removed && (null == canonicalExample))
+                canonicalExample = new StringBuilder(example.length()).append(example, 0, i);
+            else if (!removed && (null != canonicalExample))
+                canonicalExample.append(c);
         }
+        return (null == canonicalExample) ? example : canonicalExample.toString();
+    }
 
-        DeriveTriplesQueryExecutor executorTask = new DeriveTriplesQueryExecutor(endpoint, exampleSubject, examplePredicate, exampleObject, example, DeriveTriplesQueryExecutor.NONE_SELECTOR);
-
-        return new ForkJoinPool().invoke(executorTask);
+    /**
+     * @return true if the node is one of the variables introduced for the examples, named after {@link #SELECTED_VARIABLE_PATTERN}.
+     */
+    public static boolean isSelectedVariable(Node node) {
+        return node.isVariable() && node.getName().startsWith(SELECTED_VARIABLE_PATTERN);
     }
 
-    public static String getCanonicalExample(String example){
-        example = example.replaceAll("<","");
-        example = example.replaceAll(">","");
-        example = example.replaceAll("'", "");
-        example = example.replaceAll("\"", "");
+    // the position of the examples replacing a selected variable.
+    private static Integer selectedVariableIndex(Node node) {
+        return Integer.valueOf(node.getName().substring(SELECTED_VARIABLE_PATTERN.length()));
+    }
 
-        return example;
+    /**
+     * @param datasets the datasets to query, written as IRIs between angle brackets.
+     * @return the FROM clauses merging the datasets into the default graph of a query, or nothing if there are none.
+     */
+    public static String fromClauses(Collection<String> datasets) {
+        StringBuilder stringBuilder = new StringBuilder();
+        for (String dataset : datasets)
+            stringBuilder.append("FROM ").append(dataset).append(" ");
+        return stringBuilder.toString();
     }
 
     public static String getSparqlCompatibleExample(String example) {
@@ -91,46 +181,147 @@ public class UtilsJena {
         results.put(Example.CATEGORY_POSITIVE, 0);
         results.put(Example.CATEGORY_NEGATIVE, 0);
 
-        if (null != categorizedExamples.get(Example.CATEGORY_POSITIVE)) {
-            for (Example example : categorizedExamples.get(Example.CATEGORY_POSITIVE)) {
-                String query = constructAskQuery(triples, example);
-                if ((query.contains(example.getExample())) && (runAskQuery(query))) {
-                    Integer value = results.get(Example.CATEGORY_POSITIVE);
-                    results.replace(Example.CATEGORY_POSITIVE, ++value);
+        List<Example> examples = new LinkedList<>();
+        if (null != categorizedExamples.get(Example.CATEGORY_POSITIVE))
+            examples.addAll(categorizedExamples.get(Example.CATEGORY_POSITIVE));
+        if (null != categorizedExamples.get(Example.CATEGORY_NEGATIVE))
+            examples.addAll(categorizedExamples.get(Example.CATEGORY_NEGATIVE));
+
+        for (Example example : coveredExamples(triples, examples)) {
+            Integer value = results.get(example.getCategory());
+            results.replace(example.getCategory(), ++value);
+        }
+
+        return results;
+    }
+
+    /**
+     * Finds the examples matched by a basic graph pattern once the example is placed in its selected variable.
+     *
+     * @param triples  the basic graph pattern.
+     * @param examples the examples to verify.
+     * @return the examples for which the pattern holds.
+     */
+    public Set<Example> coveredExamples(Set<Triple> triples, Collection<Example> examples) {
+        return coveredExamples(triples, examples, Collections.emptyList());
+    }
+
+    /**
+     * Same as {@link #coveredExamples(Set, Collection)}, over the merge of the given datasets.
+     */
+    public Set<Example> coveredExamples(Set<Triple> triples, Collection<Example> examples, Collection<String> datasets) {
+        if (batchedVerification)
+            return coveredExamplesBatched(triples, examples, datasets);
+        return coveredExamplesAsked(triples, examples, datasets);
+    }
+
+    // one ASK per example.
+    Set<Example> coveredExamplesAsked(Set<Triple> triples, Collection<Example> examples, Collection<String> datasets) {
+        Set<Example> coveredExamples = new LinkedHashSet<>();
+        for (Example example : examples) {
+            String query = constructAskQuery(triples, example, datasets);
+            if ((query.contains(example.getExample())) && (runAskQuery(query)))
+                coveredExamples.add(example);
+        }
+        return coveredExamples;
+    }
+
+    // one SELECT per selected variable (and chunk of examples) binding the examples with VALUES, instead of one ASK per example.
+    Set<Example> coveredExamplesBatched(Set<Triple> triples, Collection<Example> examples, Collection<String> datasets) {
+        Set<Example> coveredExamples = new LinkedHashSet<>();
+        Map<Integer, List<Example>> examplesByPosition = examples.stream()
+                .collect(Collectors.groupingBy(Example::getPosition, TreeMap::new, Collectors.toList()));
+
+        for (Map.Entry<Integer, List<Example>> entry : examplesByPosition.entrySet()) {
+            if (!isSelectedVariableReplaced(triples, entry.getKey()))
+                continue;
+
+            String variable = "?" + SELECTED_VARIABLE_PATTERN + entry.getKey();
+            List<Example> positionExamples = entry.getValue();
+            for (int from = 0; from < positionExamples.size(); from += verificationBatchSize) {
+                List<Example> chunk = positionExamples.subList(from, Math.min(from + verificationBatchSize, positionExamples.size()));
+                Set<String> matches = runValuesQuery(constructValuesQuery(triples, entry.getKey(), chunk, datasets), variable);
+                for (Example example : chunk) {
+                    if (matches.contains(example.getExample()))
+                        coveredExamples.add(example);
                 }
             }
         }
+        return coveredExamples;
+    }
 
-        if (null != categorizedExamples.get(Example.CATEGORY_NEGATIVE)) {
-            for (Example example : categorizedExamples.get(Example.CATEGORY_NEGATIVE)) {
-                String query = constructAskQuery(triples, example);
-                if ((query.contains(example.getExample())) && (runAskQuery(query))) {
-                    Integer value = results.get(Example.CATEGORY_NEGATIVE);
-                    results.replace(Example.CATEGORY_NEGATIVE, ++value);
-                }
+    private String constructValuesQuery(Set<Triple> triples, Integer position, List<Example> examples, Collection<String> datasets) {
+        StringBuilder stringBuilder = new StringBuilder();
+        String variable = "?" + SELECTED_VARIABLE_PATTERN + position;
+
+        stringBuilder.append("SELECT DISTINCT ").append(variable).append(" ");
+        stringBuilder.append(fromClauses(datasets));
+        stringBuilder.append("WHERE { ");
+        stringBuilder.append("VALUES ").append(variable).append(" { ");
+        for (Example example : examples)
+            stringBuilder.append(FmtUtils.stringForNode(NodeFactory.createLiteral(example.getExample()))).append(" ");
+        stringBuilder.append("} ");
+        for (Triple triple : triples)
+            stringBuilder.append(getSparqlCompatibleTriple(renameUnreplaced(triple, position))).append(". ");
+        stringBuilder.append("}");
+
+        return stringBuilder.toString();
+    }
+
+    /**
+     * Renames the occurrences of the selected variable that constructAskQuery leaves in place to a variable of their
+     * own, so VALUES only binds the example where the ASK query would have placed it.
+     */
+    static Triple renameUnreplaced(Triple triple, Integer position) {
+        Node variable = NodeFactory.createVariable(SELECTED_VARIABLE_PATTERN + position);
+        Node unbound = NodeFactory.createVariable("unbound" + position);
+        boolean subjectReplaced = variable.equals(triple.getSubject());
+        boolean objectReplaced = (!isSelectedVariable(triple.getSubject())) && variable.equals(triple.getObject());
+
+        return new Triple(subjectReplaced ? triple.getSubject() : rename(triple.getSubject(), variable, unbound),
+                rename(triple.getPredicate(), variable, unbound),
+                objectReplaced ? triple.getObject() : rename(triple.getObject(), variable, unbound));
+    }
+
+    private static Node rename(Node node, Node variable, Node unbound) {
+        return variable.equals(node) ? unbound : node;
+    }
+
+    /**
+     * Whether the examples at a position are placed in the pattern when verifying it. It mirrors the replacements done
+     * by constructAskQuery, so both verification modes check the same examples.
+     */
+    public static boolean isSelectedVariableReplaced(Set<Triple> triples, Integer position) {
+        for (Triple triple : triples) {
+            if (isSelectedVariable(triple.getSubject())) {
+                if (position.equals(selectedVariableIndex(triple.getSubject())))
+                    return true;
+            } else if (isSelectedVariable(triple.getObject())) {
+                if (position.equals(selectedVariableIndex(triple.getObject())))
+                    return true;
             }
         }
+        return false;
+    }
 
-        return results;
+    String constructAskQuery(Set<Triple> triples, Example example) {
+        return constructAskQuery(triples, example, Collections.emptyList());
     }
 
-    private String constructAskQuery(Set<Triple> triples, Example example) {
+    String constructAskQuery(Set<Triple> triples, Example example, Collection<String> datasets) {
         StringBuilder stringBuilder = new StringBuilder();
 
         stringBuilder.append("ASK ");
+        stringBuilder.append(fromClauses(datasets));
         stringBuilder.append("WHERE { ");
         for (Triple triple : triples) {
-            if (triple.getSubject().toString().contains(SELECTED_VARIABLE_PATTERN)) {
-                String subjectString = triple.getSubject().toString();
-                String selectedVariableIndexString = subjectString.substring(3);
-                if (example.getPosition().equals(Integer.valueOf(selectedVariableIndexString))) {
+            if (isSelectedVariable(triple.getSubject())) {
+                if (example.getPosition().equals(selectedVariableIndex(triple.getSubject()))) {
                     Node newSubject = NodeFactory.createLiteral(example.getExample());
                     triple = new Triple(newSubject, triple.getPredicate(), triple.getObject());
                 }
-            } else if (triple.getObject().toString().contains(SELECTED_VARIABLE_PATTERN)) {
-                String objectString = triple.getObject().toString();
-                String selectedVariableIndexString = objectString.substring(3);
-                if (example.getPosition().equals(Integer.valueOf(selectedVariableIndexString))) {
+            } else if (isSelectedVariable(triple.getObject())) {
+                if (example.getPosition().equals(selectedVariableIndex(triple.getObject()))) {
                     Node newObject = NodeFactory.createLiteral(example.getExample());
                     triple = new Triple(triple.getSubject(), triple.getPredicate(), newObject);
                 }
@@ -176,28 +367,48 @@ public class UtilsJena {
 
 
     public boolean runAskQuery(String query) {
-        try (QueryExecution qexec = QueryExecutionFactory.sparqlService(endpoint, query)) {
-            return qexec.execAsk();
-        }
+        metricsService.countQuery(MetricsService.QUERY_ASK);
+        return queryBackend.execute(query, QueryExecution::execAsk);
+    }
+
+    private Set<String> runValuesQuery(String query, String variable) {
+        metricsService.countQuery(MetricsService.QUERY_VALUES);
+        return queryBackend.execute(query, qexec -> {
+            Set<String> results = new HashSet<>();
+            ResultSet rs = qexec.execSelect();
+            while (rs.hasNext()) {
+                RDFNode value = rs.next().get(variable);
+                if ((null != value) && value.isLiteral())
+                    results.add(value.asLiteral().getLexicalForm());
+            }
+            metricsService.countRows(MetricsService.QUERY_VALUES, rs.getRowNumber());
+            return results;
+        });
     }
 
     public Set<List<String>> runQuery(String query) {
         Set<List<String>> results = new HashSet<>();
 
-        try (QueryExecution qexec = QueryExecutionFactory.sparqlService(endpoint, query)) {
-            qexec.setTimeout(timeout, TimeUnit.MINUTES);
-            ResultSet rs = qexec.execSelect();
-            while (rs.hasNext()) {
-                QuerySolution row = rs.next();
-                Iterator<String> variableNamesIterator = row.varNames();
-                List<String> rowValues = new LinkedList<>();
-                while (variableNamesIterator.hasNext()){
-                    String variableName = variableNamesIterator.next();
-                    String value = row.get(variableName).toString();
-                    rowValues.add(value);
+        metricsService.countQuery(MetricsService.QUERY_SELECT);
+        try {
+            results = queryBackend.execute(query, qexec -> {
+                Set<List<String>> rows = new HashSet<>();
+                qexec.setTimeout(timeout, TimeUnit.MINUTES);
+                ResultSet rs = qexec.execSelect();
+                while (rs.hasNext()) {
+                    QuerySolution row = rs.next();
+                    Iterator<String> variableNamesIterator = row.varNames();
+                    List<String> rowValues = new LinkedList<>();
+                    while (variableNamesIterator.hasNext()){
+                        String variableName = variableNamesIterator.next();
+                        String value = row.get(variableName).toString();
+                        rowValues.add(value);
+                    }
+                    rows.add(rowValues);
                 }
-                results.add(rowValues);
-            }
+                metricsService.countRows(MetricsService.QUERY_SELECT, rs.getRowNumber());
+                return rows;
+            });
         } catch (QueryParseException e) {
             System.out.println("===============================================");
             logger.log(Level.SEVERE, "Error processing the query: \n" + query + "\n");
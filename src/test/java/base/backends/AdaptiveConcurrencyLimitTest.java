@@ -0,0 +1,84 @@
+package base.backends;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class AdaptiveConcurrencyLimitTest {
+
+    @Test
+    void growsWhileTheQueriesSucceed() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 4, 0.5, 0);
+        // about one more query per round of queries
+        for (int i = 0; i < 2; i++)
+            limit.onSuccess(limit.acquire(0));
+        Assertions.assertEquals(2, limit.getLimit());
+        for (int i = 0; i < 3; i++)
+            limit.onSuccess(limit.acquire(0));
+        Assertions.assertEquals(3, limit.getLimit());
+
+        for (int i = 0; i < 100; i++)
+            limit.onSuccess(limit.acquire(0));
+        Assertions.assertEquals(4, limit.getLimit());
+        Assertions.assertEquals(0, limit.getInFlight());
+    }
+
+    @Test
+    void boundsTheQueriesInFlight() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 4, 0.5, 0);
+        long first = limit.acquire(0);
+        Assertions.assertTrue(limit.acquire(0) >= 0);
+        Assertions.assertEquals(-1, limit.acquire(10));
+
+        limit.onIgnored();
+        Assertions.assertTrue(limit.acquire(0) >= 0);
+        Assertions.assertEquals(2, limit.getInFlight());
+        Assertions.assertEquals(2, limit.getLimit());
+        Assertions.assertTrue(first > 0);
+    }
+
+    @Test
+    void cutOnceByTheQueriesAlreadyInFlight() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 4, 0.5, 0);
+        long[] starts = new long[4];
+        for (int i = 0; i < starts.length; i++)
+            starts[i] = limit.acquire(0);
+
+        // the queries sent before the first cut do not cut it again
+        for (long start : starts)
+            limit.onOverload(start);
+        Assertions.assertEquals(2, limit.getLimit());
+        Assertions.assertEquals(0, limit.getInFlight());
+
+        limit.onOverload(limit.acquire(0));
+        Assertions.assertEquals(1, limit.getLimit());
+        limit.onOverload(limit.acquire(0));
+        Assertions.assertEquals(1, limit.getLimit());
+    }
+
+    @Test
+    void slowQueriesCutTheLimit() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 4, 0.5, 1);
+        long start = limit.acquire(0);
+        Thread.sleep(5);
+        limit.onSuccess(start);
+        Assertions.assertEquals(2, limit.getLimit());
+    }
+
+    @Test
+    void waitsForAQueryToFinish() throws InterruptedException {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(1, 1, 1, 0.5, 0);
+        long start = limit.acquire(0);
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            limit.onSuccess(start);
+        });
+        releaser.start();
+        Assertions.assertTrue(limit.acquire(10000) >= 0);
+        releaser.join();
+        Assertions.assertEquals(1, limit.getInFlight());
+    }
+}
@@ -0,0 +1,69 @@
+package base.backends;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+class CircuitBreakerTest {
+    private final AtomicLong clock = new AtomicLong();
+    private final CircuitBreaker circuitBreaker = new CircuitBreaker(3, 1000, clock::get);
+
+    @Test
+    void opensAfterConsecutiveFailures() {
+        fail(2);
+        circuitBreaker.onSuccess();
+        fail(2);
+        Assertions.assertFalse(circuitBreaker.isOpen());
+
+        fail(1);
+        Assertions.assertTrue(circuitBreaker.isOpen());
+        Assertions.assertFalse(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    void closesAfterASuccessfulTrial() {
+        fail(3);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(999));
+        Assertions.assertFalse(circuitBreaker.tryAcquire());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        Assertions.assertTrue(circuitBreaker.tryAcquire());
+        // a single trial at a time
+        Assertions.assertFalse(circuitBreaker.tryAcquire());
+        circuitBreaker.onSuccess();
+        Assertions.assertFalse(circuitBreaker.isOpen());
+        Assertions.assertTrue(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    void opensAgainAfterAFailedTrial() {
+        fail(3);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        Assertions.assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onFailure();
+        Assertions.assertTrue(circuitBreaker.isOpen());
+        Assertions.assertFalse(circuitBreaker.tryAcquire());
+
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        Assertions.assertTrue(circuitBreaker.tryAcquire());
+    }
+
+    @Test
+    void ignoredTrialLetsAnotherOneThrough() {
+        fail(3);
+        clock.addAndGet(TimeUnit.MILLISECONDS.toNanos(1000));
+        Assertions.assertTrue(circuitBreaker.tryAcquire());
+        circuitBreaker.onIgnored();
+        Assertions.assertTrue(circuitBreaker.isOpen());
+        Assertions.assertTrue(circuitBreaker.tryAcquire());
+    }
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            Assertions.assertTrue(circuitBreaker.tryAcquire());
+            circuitBreaker.onFailure();
+        }
+    }
+}
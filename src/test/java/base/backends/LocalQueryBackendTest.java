@@ -0,0 +1,53 @@
+package base.backends;
+
+import base.Application;
+import base.utils.UtilsJena;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.Set;
+
+@SpringBootTest(classes = Application.class)
+@ActiveProfiles("nodb")
+class LocalQueryBackendTest {
+    private static final String RESOURCE = "http://example.org/resource/";
+    @Autowired
+    private QueryBackend queryBackend;
+    @Autowired
+    private UtilsJena utilsJena;
+
+    @Test
+    void localBackendIsSelected() {
+        Assertions.assertTrue(queryBackend instanceof LocalQueryBackend);
+    }
+
+    @Test
+    void deriveTriplesOfLiteral() throws IOException {
+        Set<Triple> results = utilsJena.deriveTriples("Cuba", Optional.empty(), 10, 0);
+
+        Triple expected = new Triple(NodeFactory.createURI(RESOURCE + "Cuba"), NodeFactory.createURI("http://www.w3.org/2000/01/rdf-schema#label"), NodeFactory.createLiteral("'Cuba'"));
+        Assertions.assertEquals(Set.of(expected), results);
+    }
+
+    @Test
+    void deriveTriplesOfResource() throws IOException {
+        Set<Triple> results = utilsJena.deriveTriples(RESOURCE + "Cuba", Optional.empty(), 10, 0);
+
+        // five triples with Cuba as subject and one with Cuba as object
+        Assertions.assertEquals(6, results.size());
+        Assertions.assertEquals(2, utilsJena.deriveTriples(RESOURCE + "Cuba", Optional.empty(), 1, 0).size());
+    }
+
+    @Test
+    void runAskQuery() {
+        Assertions.assertTrue(utilsJena.runAskQuery("ASK WHERE { ?x <http://example.org/ontology/capital> <" + RESOURCE + "Havana> }"));
+        Assertions.assertFalse(utilsJena.runAskQuery("ASK WHERE { ?x <http://example.org/ontology/capital> <" + RESOURCE + "Paris> }"));
+    }
+}
@@ -0,0 +1,120 @@
+package base.backends;
+
+import base.Application;
+import base.services.MetricsService;
+import base.services.QueryContext;
+import org.apache.jena.query.QueryExecution;
+import org.apache.jena.query.QueryParseException;
+import org.apache.jena.sparql.engine.http.QueryExceptionHTTP;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.function.Function;
+
+// nothing listens on the endpoint, so every query sent fails and opens the circuit. A single query is let in flight,
+// so a slot that is not given back blocks the next one.
+@SpringBootTest(classes = Application.class, properties = {
+        "sparqlear.sparql.backend=remote",
+        "sparqlear.sparql.limiter.initialLimit=1",
+        "sparqlear.sparql.limiter.maxLimit=1",
+        "sparqlear.sparql.retry.maxRetries=0",
+        "sparqlear.sparql.circuitBreaker.failureThreshold=1",
+        "sparqlear.sparql.circuitBreaker.openMillis=" + RemoteQueryBackendCircuitTest.OPEN_MILLIS
+})
+@ActiveProfiles("nodb")
+class RemoteQueryBackendCircuitTest {
+    static final long OPEN_MILLIS = 200;
+    private static final String QUERY = "ASK WHERE { ?s ?p ?o }";
+    @Autowired
+    private QueryBackend queryBackend;
+    @Autowired
+    private MetricsService metricsService;
+
+    @DynamicPropertySource
+    static void endpoint(DynamicPropertyRegistry registry) throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        registry.add("sparqlear.sparql.endpoint", () -> "http://127.0.0.1:" + port + "/countries/sparql");
+    }
+
+    @Test
+    void cancelledTrialLetsAnotherOneThrough() throws InterruptedException {
+        double rejected = openCircuit();
+
+        // the trial is granted once the circuit was open long enough, but the request is cancelled before sending it
+        Thread.sleep(OPEN_MILLIS + 50);
+        QueryContext context = new QueryContext(0);
+        context.cancel();
+        QueryContext previous = QueryContext.attach(context);
+        try {
+            // on this thread, where the context is attached
+            Assertions.assertThrows(CancellationException.class, () -> queryBackend.execute(QUERY, qexec -> qexec.execAsk()));
+        } finally {
+            QueryContext.attach(previous);
+        }
+
+        // the next query is the trial, sent to the endpoint instead of rejected
+        Assertions.assertThrows(QueryExceptionHTTP.class, this::ask);
+        Assertions.assertEquals(rejected, rejectedQueries());
+    }
+
+    @Test
+    void failedTrialHandlerLetsAnotherOneThrough() throws InterruptedException {
+        double rejected = openCircuit();
+
+        // the trial is granted and the slot acquired, but the handler of the results throws an Error
+        Thread.sleep(OPEN_MILLIS + 50);
+        Assertions.assertThrows(StackOverflowError.class, () -> execute(QUERY, qexec -> {
+            throw new StackOverflowError();
+        }));
+
+        // the next query is the trial, sent instead of rejected, and as the query is wrong it closes the circuit
+        Assertions.assertThrows(QueryParseException.class, () -> ask("ASK WHERE {"));
+        Assertions.assertEquals(rejected, rejectedQueries());
+
+        // the slot taken by a query whose handler throws an Error is given back, so the next query does not wait for it
+        Assertions.assertThrows(StackOverflowError.class, () -> execute(QUERY, qexec -> {
+            throw new StackOverflowError();
+        }));
+        Assertions.assertThrows(QueryExceptionHTTP.class, this::ask);
+        Assertions.assertEquals(rejected, rejectedQueries());
+    }
+
+    // opens the circuit whatever the state the previous test left it in, returning the queries rejected so far.
+    private double openCircuit() throws InterruptedException {
+        Thread.sleep(OPEN_MILLIS + 50);
+        Assertions.assertThrows(QueryExceptionHTTP.class, this::ask);
+        double rejected = rejectedQueries();
+        Assertions.assertThrows(QueryExceptionHTTP.class, this::ask);
+        Assertions.assertEquals(rejected + 1, rejectedQueries());
+        return rejected + 1;
+    }
+
+    private boolean ask() {
+        return ask(QUERY);
+    }
+
+    private boolean ask(String query) {
+        return execute(query, qexec -> qexec.execAsk());
+    }
+
+    // a query waiting for a slot that was not given back fails instead of blocking the tests
+    private <T> T execute(String query, Function<QueryExecution, T> handler) {
+        return Assertions.assertTimeoutPreemptively(Duration.ofSeconds(10), () -> queryBackend.execute(query, handler));
+    }
+
+    private double rejectedQueries() {
+        return metricsService.getMeterRegistry().counter("sparqlear.sparql.rejected").count();
+    }
+}
@@ -0,0 +1,126 @@
+package base.backends;
+
+import base.Application;
+import base.learners.QueryLearner;
+import base.services.MetricsService;
+import base.utils.UtilsJena;
+import org.apache.jena.fuseki.main.FusekiServer;
+import org.apache.jena.query.Dataset;
+import org.apache.jena.query.DatasetFactory;
+import org.apache.jena.query.QueryParseException;
+import org.apache.jena.riot.RDFDataMgr;
+import org.apache.jena.sparql.engine.http.QueryExceptionHTTP;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.SocketTimeoutException;
+import java.util.Optional;
+import java.util.Set;
+
+// an embedded Fuseki server stands for the endpoint
+@SpringBootTest(classes = Application.class, properties = {
+        "sparqlear.sparql.backend=remote",
+        "sparqlear.sparql.http.resultFormat=thrift"
+})
+@ActiveProfiles("nodb")
+class RemoteQueryBackendTest {
+    private static final String RESOURCE = "http://example.org/resource/";
+    private static FusekiServer server;
+    @Autowired
+    private QueryBackend queryBackend;
+    @Autowired
+    private UtilsJena utilsJena;
+    @Autowired
+    private QueryLearner queryLearner;
+    @Autowired
+    private MetricsService metricsService;
+
+    @BeforeAll
+    static void startServer() throws IOException {
+        Dataset dataset = DatasetFactory.createTxnMem();
+        RDFDataMgr.read(dataset, "fixtures/countries.ttl");
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        server = FusekiServer.create().port(port).add("/countries", dataset).build().start();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.stop();
+    }
+
+    @DynamicPropertySource
+    static void endpoint(DynamicPropertyRegistry registry) {
+        registry.add("sparqlear.sparql.endpoint", () -> "http://127.0.0.1:" + server.getPort() + "/countries/sparql");
+    }
+
+    @Test
+    void remoteBackendIsSelected() {
+        Assertions.assertTrue(queryBackend instanceof RemoteQueryBackend);
+    }
+
+    @Test
+    void deriveTriplesOfResource() throws IOException {
+        double receivedBytes = receivedBytes();
+        // five triples with Cuba as subject and one with Cuba as object
+        Assertions.assertEquals(6, utilsJena.deriveTriples(RESOURCE + "Cuba", Optional.empty(), 10, 0).size());
+        Assertions.assertTrue(receivedBytes() > receivedBytes);
+    }
+
+    @Test
+    void runAskQuery() {
+        Assertions.assertTrue(utilsJena.runAskQuery("ASK WHERE { ?x <http://example.org/ontology/capital> <" + RESOURCE + "Havana> }"));
+        Assertions.assertFalse(utilsJena.runAskQuery("ASK WHERE { ?x <http://example.org/ontology/capital> <" + RESOURCE + "Paris> }"));
+    }
+
+    @Test
+    void learnFromEndpoint() throws Exception {
+        // the same query learned over the local backend
+        Assertions.assertEquals(Optional.of(Set.of("SELECT DISTINCT ?sv0 WHERE { ?x0 <http://example.org/ontology/capital> ?x4  . ?x0 <http://www.w3.org/2000/01/rdf-schema#label> ?sv0  . }")),
+                queryLearner.learn("+Cuba +Venezuela +Colombia -Malta -Love"));
+    }
+
+    @Test
+    void concurrencyLimitIsVisible() {
+        // it grows from the initial limit while the queries to the endpoint succeed
+        double limit = metricsService.getMeterRegistry().get("sparqlear.sparql.concurrency.limit").gauge().value();
+        Assertions.assertTrue((limit >= 4) && (limit <= 8));
+    }
+
+    @Test
+    void retryOnlyTheOverloadedEndpoint() {
+        Assertions.assertTrue(RemoteQueryBackend.isRetryable(new QueryExceptionHTTP(429, "Too Many Requests")));
+        Assertions.assertTrue(RemoteQueryBackend.isRetryable(new QueryExceptionHTTP(503, "Service Unavailable")));
+        Assertions.assertTrue(RemoteQueryBackend.isRetryable(new QueryExceptionHTTP(-1, "refused", new ConnectException())));
+        Assertions.assertFalse(RemoteQueryBackend.isRetryable(new QueryExceptionHTTP(400, "Bad Request")));
+        Assertions.assertFalse(RemoteQueryBackend.isRetryable(new QueryExceptionHTTP(new SocketTimeoutException())));
+        Assertions.assertFalse(RemoteQueryBackend.isRetryable(new QueryParseException("", 1, 1)));
+
+        // a query timing out is not sent again, but it is a sign of overload
+        Assertions.assertTrue(RemoteQueryBackend.isOverload(new QueryExceptionHTTP(new SocketTimeoutException())));
+        Assertions.assertFalse(RemoteQueryBackend.isOverload(new QueryExceptionHTTP(400, "Bad Request")));
+    }
+
+    @Test
+    void failedQueryIsNotRetried() {
+        double retries = metricsService.getMeterRegistry().counter("sparqlear.sparql.retries").count();
+        Assertions.assertThrows(QueryParseException.class, () -> queryBackend.execute("SELECT * WHERE { ?s ?p ?o } GROUP BY ?x", qexec -> qexec.execSelect().hasNext()));
+        Assertions.assertEquals(retries, metricsService.getMeterRegistry().counter("sparqlear.sparql.retries").count());
+    }
+
+    private double receivedBytes() {
+        return metricsService.getMeterRegistry().find("sparqlear.sparql.response.bytes").counters().stream().mapToDouble(counter -> counter.count()).sum();
+    }
+}
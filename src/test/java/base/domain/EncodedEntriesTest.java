@@ -0,0 +1,49 @@
+package base.domain;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+class EncodedEntriesTest {
+    private static final String RESOURCE = "http://example.org/resource/";
+
+    @Test
+    void entriesAreDeduplicated() {
+        EncodedEntries entries = new EncodedEntries(new NodeDictionary());
+        Triple capital = triple("Cuba", "capital", "Havana");
+
+        int id = entries.add("Cuba", capital);
+        Assertions.assertEquals(id, entries.add("Cuba", triple("Cuba", "capital", "Havana")));
+        Assertions.assertNotEquals(id, entries.add("Havana", capital));
+        Assertions.assertEquals(2, entries.size());
+        // the subject and the object of both entries are shared by the dictionary
+        Assertions.assertEquals(3, entries.getDictionary().size());
+
+        Assertions.assertEquals(new ExampleEntry<>("Cuba", capital), entries.toEntry(id));
+        Assertions.assertEquals(RESOURCE + "Havana", entries.getDictionary().getCanonicalLabel(entries.getObject(id)));
+    }
+
+    @Test
+    void toEntries() {
+        EncodedEntries entries = new EncodedEntries(new NodeDictionary());
+        IntQueueSet ids = new IntQueueSet();
+        List<ExampleEntry<String, Triple>> expected = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            Triple triple = triple("Country" + (i % 10), "property" + i, "Value" + (i % 7));
+            expected.add(new ExampleEntry<>("Country" + (i % 10), triple));
+            ids.add(entries.add("Country" + (i % 10), triple));
+        }
+
+        Set<ExampleEntry<String, Triple>> materialized = entries.toEntries(ids);
+        Assertions.assertEquals(expected, new ArrayList<>(materialized));
+    }
+
+    private Triple triple(String subject, String predicate, String object) {
+        return new Triple(NodeFactory.createURI(RESOURCE + subject), NodeFactory.createURI("http://example.org/ontology/" + predicate), NodeFactory.createURI(RESOURCE + object));
+    }
+}
@@ -0,0 +1,39 @@
+package base.domain;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+class IntOpenAddressingIndexTest {
+
+    @Test
+    void sameAsHashSet() {
+        Random random = new Random(42);
+        int capacity = 8;
+        IntOpenAddressingIndex index = new IntOpenAddressingIndex(capacity);
+        Set<Integer> expected = new HashSet<>();
+        for (int i = 0; i < 100000; i++) {
+            int value = random.nextInt(5000);
+            if (random.nextBoolean()) {
+                Assertions.assertEquals(expected.add(value), index.add(value));
+                // kept at most half full, as the queues do
+                if (expected.size() << 1 > capacity) {
+                    index.grow();
+                    capacity <<= 1;
+                }
+            } else {
+                expected.remove(value);
+                index.remove(value);
+            }
+        }
+
+        for (int value = -1; value < 5000; value++)
+            Assertions.assertEquals(expected.contains(value), index.contains(value));
+        index.clear();
+        for (int value : expected)
+            Assertions.assertFalse(index.contains(value));
+    }
+}
@@ -0,0 +1,52 @@
+package base.domain;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+
+class IntPriorityQueueSetTest {
+
+    @Test
+    void priorityOrder() {
+        IntPriorityQueueSet queue = new IntPriorityQueueSet();
+        Assertions.assertTrue(queue.add(3, 0.1f));
+        Assertions.assertTrue(queue.add(1, 0.9f));
+        Assertions.assertTrue(queue.add(2, 0.1f));
+        Assertions.assertFalse(queue.add(3, 1f));
+        Assertions.assertTrue(queue.add(4, 0.5f));
+
+        Assertions.assertEquals(4, queue.size());
+        Assertions.assertEquals(1, queue.poll());
+        Assertions.assertEquals(4, queue.poll());
+        // the same priority, in insertion order
+        Assertions.assertEquals(3, queue.poll());
+        Assertions.assertFalse(queue.contains(3));
+        Assertions.assertTrue(queue.add(3, 0.1f));
+        Assertions.assertEquals(2, queue.poll());
+        Assertions.assertEquals(3, queue.poll());
+        Assertions.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void sameAsPriorityQueue() {
+        Random random = new Random(42);
+        IntPriorityQueueSet queue = new IntPriorityQueueSet(4);
+        // value, priority and insertion order
+        PriorityQueue<long[]> expected = new PriorityQueue<>((a, b) -> (a[1] != b[1]) ? Long.compare(b[1], a[1]) : Long.compare(a[2], b[2]));
+        long sequence = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (expected.isEmpty() || (random.nextInt(3) > 0)) {
+                int value = random.nextInt(5000);
+                int priority = random.nextInt(10);
+                boolean queued = expected.stream().anyMatch(element -> element[0] == value);
+                Assertions.assertEquals(!queued, queue.add(value, priority));
+                if (!queued)
+                    expected.add(new long[]{value, priority, sequence++});
+            } else
+                Assertions.assertEquals(expected.poll()[0], queue.poll());
+            Assertions.assertEquals(expected.size(), queue.size());
+        }
+    }
+}
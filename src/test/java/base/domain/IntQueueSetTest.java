@@ -0,0 +1,49 @@
+package base.domain;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class IntQueueSetTest {
+
+    @Test
+    void queueOrder() {
+        IntQueueSet queue = new IntQueueSet();
+        Assertions.assertTrue(queue.add(3));
+        Assertions.assertTrue(queue.add(1));
+        Assertions.assertFalse(queue.add(3));
+        Assertions.assertTrue(queue.add(2));
+
+        Assertions.assertEquals(3, queue.size());
+        Assertions.assertEquals(3, queue.poll());
+        Assertions.assertFalse(queue.contains(3));
+        Assertions.assertTrue(queue.add(3));
+        Assertions.assertEquals(1, queue.poll());
+        Assertions.assertEquals(2, queue.poll());
+        Assertions.assertEquals(3, queue.poll());
+        Assertions.assertTrue(queue.isEmpty());
+    }
+
+    @Test
+    void sameAsQueueSet() {
+        Random random = new Random(42);
+        IntQueueSet queue = new IntQueueSet(4);
+        QueueSet<Integer> expected = new QueueSet<>();
+        for (int i = 0; i < 100000; i++) {
+            if (expected.isEmpty() || (random.nextInt(3) > 0)) {
+                int value = random.nextInt(5000);
+                Assertions.assertEquals(expected.add(value), queue.add(value));
+            } else
+                Assertions.assertEquals((int) expected.poll(), queue.poll());
+        }
+
+        List<Integer> values = new ArrayList<>();
+        queue.iterator().forEachRemaining((int value) -> values.add(value));
+        Assertions.assertEquals(new ArrayList<>(expected), values);
+        for (int value = 0; value < 5000; value++)
+            Assertions.assertEquals(expected.contains(value), queue.contains(value));
+    }
+}
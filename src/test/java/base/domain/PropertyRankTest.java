@@ -0,0 +1,132 @@
+package base.domain;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+class PropertyRankTest {
+
+    @Test
+    void lookupWeights() {
+        PropertyRank rank = new PropertyRank.Builder()
+                .add("http://example.org/ontology/capital", 0.8f)
+                .add("http://www.w3.org/2000/01/rdf-schema#label", 0.1f)
+                .add("http://example.org/ontology/capital", 0.9f)
+                .build();
+
+        Assertions.assertEquals(2, rank.size());
+        Assertions.assertEquals(0.9f, rank.getWeight("http://example.org/ontology/capital"));
+        Assertions.assertEquals(0.1f, rank.getWeight("http://www.w3.org/2000/01/rdf-schema#label"));
+        Assertions.assertTrue(Float.isNaN(rank.getWeight("http://example.org/ontology/population")));
+        Assertions.assertTrue(Float.isNaN(PropertyRank.EMPTY.getWeight("http://example.org/ontology/capital")));
+    }
+
+    @Test
+    void sameAsMap() {
+        Random random = new Random(42);
+        PropertyRank.Builder builder = new PropertyRank.Builder();
+        Map<String, Float> expected = new HashMap<>();
+        for (int i = 0; i < 100000; i++) {
+            String label = "http://example.org/ontology/p" + random.nextInt(50000);
+            float weight = random.nextFloat();
+            builder.add(label, weight);
+            expected.put(label, weight);
+        }
+
+        PropertyRank rank = builder.build();
+        Assertions.assertEquals(expected.size(), rank.size());
+        expected.forEach((label, weight) -> Assertions.assertEquals(weight, rank.getWeight(label)));
+        for (int i = 50000; i < 60000; i++)
+            Assertions.assertTrue(Float.isNaN(rank.getWeight("http://example.org/ontology/p" + i)));
+    }
+
+    @Test
+    void collidingLabels() {
+        // the same String.hashCode
+        Assertions.assertEquals("http://example.org/ontology/Aa".hashCode(), "http://example.org/ontology/BB".hashCode());
+        PropertyRank rank = new PropertyRank.Builder()
+                .add("http://example.org/ontology/Aa", 0.2f)
+                .add("http://example.org/ontology/BB", 0.7f)
+                .build();
+
+        Assertions.assertEquals(2, rank.size());
+        Assertions.assertEquals(0.2f, rank.getWeight("http://example.org/ontology/Aa"));
+        Assertions.assertEquals(0.7f, rank.getWeight("http://example.org/ontology/BB"));
+        Assertions.assertTrue(Float.isNaN(rank.getWeight("http://example.org/ontology/C#")));
+    }
+
+    @Test
+    void verifyTheWholeLabel() {
+        String[] labels = {"http://example.org/ontology/población", "http://example.org/ontology/首都",
+                "http://example.org/ontology/\uD83C\uDF0D", "http://example.org/ontology/\uD83C", ""};
+        PropertyRank.Builder builder = new PropertyRank.Builder();
+        for (int i = 0; i < labels.length; i++)
+            builder.add(labels[i], i);
+
+        PropertyRank rank = builder.build();
+        for (int i = 0; i < labels.length; i++)
+            Assertions.assertEquals(i, rank.getWeight(labels[i]));
+        Assertions.assertTrue(Float.isNaN(rank.getWeight("http://example.org/ontology/poblacion")));
+        Assertions.assertTrue(Float.isNaN(rank.getWeight("http://example.org/ontology/首")));
+        Assertions.assertTrue(Float.isNaN(rank.getWeight("http://example.org/ontology/?")));
+    }
+
+    @Test
+    void mapWrittenRank() throws IOException {
+        PropertyRank.Builder builder = new PropertyRank.Builder();
+        for (int i = 0; i < 1000; i++)
+            builder.add("http://example.org/ontology/p" + i, i / 1000f);
+        builder.add("http://example.org/ontology/首都", 0.5f);
+        PropertyRank rank = builder.build();
+
+        Path file = Files.createTempFile("rank", ".bin");
+        try {
+            rank.write(file);
+            PropertyRank mapped = PropertyRank.map(file);
+
+            Assertions.assertEquals(rank.size(), mapped.size());
+            for (int i = 0; i < 1000; i++)
+                Assertions.assertEquals(i / 1000f, mapped.getWeight("http://example.org/ontology/p" + i));
+            Assertions.assertEquals(0.5f, mapped.getWeight("http://example.org/ontology/首都"));
+            Assertions.assertTrue(Float.isNaN(mapped.getWeight("http://example.org/ontology/p1000")));
+
+            Map<String, Float> entries = new LinkedHashMap<>();
+            mapped.forEach(entries::put);
+            Assertions.assertEquals(1001, entries.size());
+            Assertions.assertEquals("http://example.org/ontology/p0", entries.keySet().iterator().next());
+            Assertions.assertEquals(0.5f, entries.get("http://example.org/ontology/首都"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void rejectInvalidFile() throws IOException {
+        Path file = Files.createTempFile("rank", ".bin");
+        try {
+            Files.write(file, "http://example.org/ontology/capital\t0.8\n".getBytes(StandardCharsets.UTF_8));
+            Assertions.assertThrows(IOException.class, () -> PropertyRank.map(file));
+
+            PropertyRank.EMPTY.write(file);
+            Assertions.assertEquals(0, PropertyRank.map(file).size());
+            Files.write(file, Arrays.copyOf(Files.readAllBytes(file), 30));
+            Assertions.assertThrows(IOException.class, () -> PropertyRank.map(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    void rejectMissingWeight() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new PropertyRank.Builder().add("http://example.org/ontology/capital", Float.NaN));
+    }
+}
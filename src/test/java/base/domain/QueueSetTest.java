@@ -0,0 +1,42 @@
+package base.domain;
+
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class QueueSetTest {
+
+    @Test
+    void queueOrder() {
+        QueueSet<String> queue = new QueueSet<>();
+        Assertions.assertTrue(queue.offer("a"));
+        Assertions.assertTrue(queue.add("b"));
+        Assertions.assertFalse(queue.add("a"));
+        Assertions.assertTrue(queue.addAll(List.of("c", "b")));
+        Assertions.assertFalse(queue.addAll(List.of("a", "c")));
+
+        Assertions.assertEquals(3, queue.size());
+        Assertions.assertEquals("a", queue.peek());
+        Assertions.assertEquals("a", queue.poll());
+        Assertions.assertTrue(queue.remove("c"));
+        Assertions.assertFalse(queue.contains("c"));
+        Assertions.assertEquals("b", queue.remove());
+        Assertions.assertNull(queue.poll());
+    }
+
+    @Test
+    void entriesAreComparedByValue() {
+        Triple triple = Triple.create(NodeFactory.createURI("http://example.org/resource/Cuba"), NodeFactory.createURI("http://example.org/ontology/capital"), NodeFactory.createURI("http://example.org/resource/Havana"));
+        Triple sameTriple = Triple.create(NodeFactory.createURI("http://example.org/resource/Cuba"), NodeFactory.createURI("http://example.org/ontology/capital"), NodeFactory.createURI("http://example.org/resource/Havana"));
+
+        QueueSet<ExampleEntry<String, Triple>> queue = new QueueSet<>();
+        queue.add(new ExampleEntry<>("Cuba", triple));
+
+        Assertions.assertTrue(queue.contains(new ExampleEntry<>("Cuba", sameTriple)));
+        Assertions.assertFalse(queue.add(new ExampleEntry<>("Cuba", sameTriple)));
+        Assertions.assertTrue(queue.add(new ExampleEntry<>("Havana", sameTriple)));
+    }
+}
@@ -0,0 +1,107 @@
+package base.learners;
+
+import base.Application;
+import base.domain.ExampleEntry;
+import base.domain.PropertyRank;
+import base.services.MetricsService;
+import io.micrometer.core.instrument.Counter;
+import org.apache.jena.graph.Triple;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+// the rank favours the capitals, which tell the countries from the rest of the fixture
+@SpringBootTest(classes = Application.class, properties = {
+        "sparqlear.sparql.candidateTriples.limit=5",
+        "sparqlear.tripleFinder.parallelExpansion=false",
+        "sparqlear.tripleFinder.frontier=bestFirst",
+        "sparqlear.propertyRank.store=file"
+})
+@ActiveProfiles("nodb")
+class BestFirstCrawlTest {
+    private static final String ONTOLOGY = "http://example.org/ontology/";
+    private static Path rankFile;
+    @Autowired
+    private TripleFinder tripleFinder;
+    @Autowired
+    private QueryLearner queryLearner;
+    @Autowired
+    private MetricsService metricsService;
+
+    @DynamicPropertySource
+    static void rank(DynamicPropertyRegistry registry) throws IOException {
+        rankFile = Files.createTempFile("rank", ".bin");
+        new PropertyRank.Builder()
+                .add(ONTOLOGY + "capital", 0.9f)
+                .add("http://www.w3.org/2000/01/rdf-schema#label", 0.8f)
+                .add(ONTOLOGY + "continent", 0.2f)
+                .add(ONTOLOGY + "language", 0.2f)
+                .add(ONTOLOGY + "type", 0.1f)
+                .add(ONTOLOGY + "gender", 0.1f)
+                .add(ONTOLOGY + "citizenship", 0.1f)
+                .build().write(rankFile);
+        registry.add("sparqlear.propertyRank.file", rankFile::toString);
+    }
+
+    @AfterAll
+    static void deleteRank() throws IOException {
+        Files.delete(rankFile);
+    }
+
+    @Test
+    void visitTheHeaviestTriplesFirst() throws Exception {
+        Set<ExampleEntry<String, Triple>> batch = tripleFinder.deriveCandidateTriples(new TripleCrawl("Cuba", Optional.empty(), 0));
+
+        // the example is only reached through its label, then the capitals come before the rest of its triples
+        List<String> predicates = batch.stream().map(entry -> entry.getValue().getPredicate().getURI()).collect(Collectors.toList());
+        Assertions.assertEquals(5, predicates.size());
+        Assertions.assertEquals("http://www.w3.org/2000/01/rdf-schema#label", predicates.get(0));
+        Assertions.assertEquals(ONTOLOGY + "capital", predicates.get(1));
+        Assertions.assertFalse(predicates.contains(ONTOLOGY + "type"), predicates.toString());
+    }
+
+    @Test
+    void learnWithLessQueries() throws Exception {
+        String examples = "+Cuba +Venezuela +Colombia -Malta -Love";
+
+        // the same application with the fifo frontier, in a context of its own
+        double fifoQueries;
+        try (ConfigurableApplicationContext fifo = new SpringApplicationBuilder(Application.class)
+                .profiles("nodb")
+                .web(WebApplicationType.NONE)
+                .run("--sparqlear.sparql.candidateTriples.limit=5", "--sparqlear.tripleFinder.parallelExpansion=false",
+                        "--sparqlear.tripleFinder.frontier=" + TripleFinder.FRONTIER_FIFO, "--sparqlear.propertyRank.store=file",
+                        "--sparqlear.propertyRank.file=" + rankFile)) {
+            // the budget of candidate triples runs out before the capitals are found
+            Assertions.assertEquals(Optional.of(Set.of()), fifo.getBean(QueryLearner.class).learn(examples));
+            fifoQueries = queries(fifo.getBean(MetricsService.class));
+        }
+
+        double queries = queries(metricsService);
+        Assertions.assertEquals(Optional.of(Set.of("SELECT DISTINCT ?sv0 WHERE { ?x0 <http://example.org/ontology/capital> ?x1  . ?x0 <http://www.w3.org/2000/01/rdf-schema#label> ?sv0  . }")),
+                queryLearner.learn(examples));
+        double bestFirstQueries = queries(metricsService) - queries;
+
+        Assertions.assertTrue(bestFirstQueries < fifoQueries, "best-first: " + bestFirstQueries + " queries, fifo: " + fifoQueries);
+    }
+
+    private static double queries(MetricsService metricsService) {
+        return metricsService.getMeterRegistry().find("sparqlear.sparql.queries").counters().stream().mapToDouble(Counter::count).sum();
+    }
+}
@@ -0,0 +1,118 @@
+package base.learners;
+
+import base.Application;
+import base.domain.LearnedQuery;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+
+@SpringBootTest(classes = Application.class)
+@ActiveProfiles("nodb")
+class QueryLearnerConcurrencyTest {
+    private static final int LEARNS = 16;
+    private static final List<String> EXAMPLES = List.of(
+            "+Cuba +Venezuela +Colombia",
+            "+Cuba +Venezuela +Colombia -Malta -Love",
+            "+<Fidel, Cuba, male> +<Leonardo, Italy, male>",
+            "+<Fidel, Cuba, male> +<Leonardo, Italy, male> -<blue, plane, tree>");
+    @Autowired
+    private QueryLearner queryLearner;
+
+    @Test
+    void concurrentLearnsMatchSequentialOnes() throws Exception {
+        Map<String, Optional<Set<String>>> expected = new HashMap<>();
+        for (String examples : EXAMPLES)
+            expected.put(examples, queryLearner.learn(examples));
+        // only the countries with a capital are positive examples
+        Assertions.assertEquals(Optional.of(Set.of("SELECT DISTINCT ?sv0 WHERE { ?x0 <http://example.org/ontology/capital> ?x4  . ?x0 <http://www.w3.org/2000/01/rdf-schema#label> ?sv0  . }")),
+                expected.get("+Cuba +Venezuela +Colombia -Malta -Love"));
+
+        ExecutorService executor = Executors.newFixedThreadPool(LEARNS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<String> submittedExamples = new ArrayList<>();
+            List<Future<Optional<Set<String>>>> results = new ArrayList<>();
+            for (int i = 0; i < LEARNS; i++) {
+                String examples = EXAMPLES.get(i % EXAMPLES.size());
+                submittedExamples.add(examples);
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return queryLearner.learn(examples);
+                }));
+            }
+            start.countDown();
+
+            for (int i = 0; i < LEARNS; i++)
+                Assertions.assertEquals(expected.get(submittedExamples.get(i)), results.get(i).get(2, TimeUnit.MINUTES), submittedExamples.get(i));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void learnAsync() throws Exception {
+        String examples = EXAMPLES.get(1);
+        Set<String> learnedQueries = queryLearner.learnAsync(examples, new LearnOptions(Duration.ofMinutes(2), Duration.ofSeconds(30))).get();
+
+        Assertions.assertEquals(queryLearner.learn(examples), Optional.of(learnedQueries));
+    }
+
+    @Test
+    void learnAsyncDeadline() {
+        CompletableFuture<Set<String>> learning = queryLearner.learnAsync(EXAMPLES.get(2), new LearnOptions(Duration.ofMillis(1), null));
+
+        ExecutionException e = Assertions.assertThrows(ExecutionException.class, () -> learning.get(1, TimeUnit.MINUTES));
+        Assertions.assertTrue(e.getCause() instanceof TimeoutException);
+    }
+
+    @Test
+    void learnAsyncCancellation() throws Exception {
+        CompletableFuture<Set<String>> learning = queryLearner.learnAsync(EXAMPLES.get(3), LearnOptions.unlimited());
+        Assertions.assertTrue(learning.cancel(true));
+        Assertions.assertTrue(learning.isCancelled());
+
+        // the learner is still available once the cancelled learn is aborted
+        Assertions.assertEquals(queryLearner.learn(EXAMPLES.get(0)), Optional.of(queryLearner.learnAsync(EXAMPLES.get(0), LearnOptions.unlimited()).get(1, TimeUnit.MINUTES)));
+    }
+
+    @Test
+    void learnAsyncStreaming() throws Exception {
+        String examples = EXAMPLES.get(1);
+        List<LearnedQuery> published = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> completed = new CompletableFuture<>();
+        Set<String> learnedQueries = queryLearner.learnAsync(examples, LearnOptions.unlimited(), new Flow.Subscriber<LearnedQuery>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(LearnedQuery learnedQuery) {
+                published.add(learnedQuery);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                completed.completeExceptionally(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                completed.complete(null);
+            }
+        }).get(2, TimeUnit.MINUTES);
+        completed.get(1, TimeUnit.MINUTES);
+
+        // the first query published is the one learned when a single query is requested
+        Assertions.assertFalse(published.isEmpty());
+        Assertions.assertEquals(queryLearner.learn(examples).map(queries -> queries.iterator().next()), Optional.of(published.get(0).getQuery()));
+        Assertions.assertEquals(learnedQueries, published.stream().map(LearnedQuery::getQuery).collect(Collectors.toCollection(LinkedHashSet::new)));
+    }
+}
@@ -0,0 +1,35 @@
+package base.learners;
+
+import base.Application;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Optional;
+import java.util.Set;
+
+// the countries of each continent live in their own named graph
+@SpringBootTest(classes = Application.class, properties = {
+        "sparqlear.sparql.local.dump=fixtures/countries.trig",
+        "sparqlear.sparql.datasets=<http://example.org/graph/europe> <http://example.org/graph/america>",
+        "sparqlear.sparql.datasets.mode=union"
+})
+@ActiveProfiles("nodb")
+class QueryLearnerDatasetsTest {
+    @Autowired
+    private QueryLearner queryLearner;
+
+    @Test
+    void learnFromTheUnionOfTheDatasets() throws Exception {
+        // the positive examples are in different datasets, and only the negative one has no capital
+        Assertions.assertEquals(Optional.of(Set.of("SELECT DISTINCT ?sv0 FROM <http://example.org/graph/america> FROM <http://example.org/graph/europe> WHERE { ?x0 <http://example.org/ontology/capital> ?x4  . ?x0 <http://www.w3.org/2000/01/rdf-schema#label> ?sv0  . }")),
+                queryLearner.learn("+Cuba +Italy -Malta"));
+    }
+
+    @Test
+    void learnFromExamplesMissingInTheDatasets() throws Exception {
+        Assertions.assertEquals(Optional.empty(), queryLearner.learn("+Cuba +Love"));
+    }
+}
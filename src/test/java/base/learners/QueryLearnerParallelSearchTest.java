@@ -0,0 +1,54 @@
+package base.learners;
+
+import base.Application;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+// the candidate patterns verified at the same time must not change the pattern returned by the search
+class QueryLearnerParallelSearchTest {
+    private static final List<String> EXAMPLES = List.of(
+            "+Cuba +Venezuela +Colombia",
+            "+Cuba +Venezuela +Colombia -Malta -Love",
+            // the continent, the language and the capital tell the countries from Love, so there is a choice to make
+            "+Cuba +Venezuela +Colombia -Love",
+            "+<Fidel, Cuba, male> +<Leonardo, Italy, male>",
+            "+<Fidel, Cuba, male> +<Leonardo, Italy, male> -<blue, plane, tree>");
+
+    @Test
+    void firstPatternMatchesSequentialSearch() throws Exception {
+        assertSameAsSequentialSearch("first");
+    }
+
+    @Test
+    void bestPatternMatchesSequentialSearch() throws Exception {
+        assertSameAsSequentialSearch("best");
+    }
+
+    private static void assertSameAsSequentialSearch(String selection) throws Exception {
+        List<Optional<Set<String>>> sequential = learn(selection, 1);
+
+        Assertions.assertTrue(sequential.stream().anyMatch(queries -> queries.isPresent() && !queries.get().isEmpty()), sequential::toString);
+        Assertions.assertEquals(sequential, learn(selection, 8));
+    }
+
+    private static List<Optional<Set<String>>> learn(String selection, int parallelism) throws Exception {
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                .profiles("nodb")
+                .web(WebApplicationType.NONE)
+                .run("--sparqlear.bgpSearch.selection=" + selection, "--sparqlear.bgpSearch.parallelism=" + parallelism)) {
+            QueryLearner queryLearner = context.getBean(QueryLearner.class);
+            List<Optional<Set<String>>> learned = new ArrayList<>();
+            for (String examples : EXAMPLES)
+                learned.add(queryLearner.learn(examples));
+            return learned;
+        }
+    }
+}
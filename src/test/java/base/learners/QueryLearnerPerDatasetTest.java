@@ -0,0 +1,34 @@
+package base.learners;
+
+import base.Application;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Optional;
+import java.util.Set;
+
+@SpringBootTest(classes = Application.class, properties = {
+        "sparqlear.sparql.local.dump=fixtures/countries.trig",
+        "sparqlear.sparql.datasets=<http://example.org/graph/europe> <http://example.org/graph/america>",
+        "sparqlear.sparql.datasets.mode=perDataset"
+})
+@ActiveProfiles("nodb")
+class QueryLearnerPerDatasetTest {
+    @Autowired
+    private QueryLearner queryLearner;
+
+    @Test
+    void learnFromEachDataset() throws Exception {
+        // the negative example is in another dataset, so it does not restrict the query
+        Assertions.assertEquals(Optional.of(Set.of("SELECT DISTINCT ?sv0 FROM <http://example.org/graph/america> WHERE { ?x0 <http://www.w3.org/2000/01/rdf-schema#label> ?sv0  . }")),
+                queryLearner.learn("+Cuba +Venezuela +Colombia -Malta"));
+    }
+
+    @Test
+    void learnFromExamplesSpreadAcrossTheDatasets() throws Exception {
+        Assertions.assertEquals(Optional.empty(), queryLearner.learn("+Cuba +Italy -Malta"));
+    }
+}
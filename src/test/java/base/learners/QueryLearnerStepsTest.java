@@ -0,0 +1,80 @@
+package base.learners;
+
+import base.domain.Example;
+import base.domain.ExampleEntry;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+// the steps of the learning that send no query, run without the application context
+class QueryLearnerStepsTest {
+    private final QueryLearner queryLearner = new QueryLearner();
+
+    @Test
+    void filterCommonTriples() {
+        Example cuba = new Example(1, "Cuba", Example.CATEGORY_POSITIVE, 1);
+        Example venezuela = new Example(2, "Venezuela", Example.CATEGORY_POSITIVE, 1);
+        Example colombia = new Example(3, "Colombia", Example.CATEGORY_POSITIVE, 1);
+
+        Map<Example, Set<ExampleEntry<String, Triple>>> candidateTriples = new HashMap<>();
+        candidateTriples.put(cuba, entries("Cuba", "label", "capital", "language", "capital"));
+        candidateTriples.put(venezuela, entries("Venezuela", "capital", "label"));
+        candidateTriples.put(colombia, entries("Colombia", "label", "language"));
+
+        Map<Example, List<ExampleEntry<String, Triple>>> commonTriples = queryLearner.filterCommonTriples(candidateTriples, Map.of(1, List.of(cuba, venezuela, colombia)));
+
+        // only the label is shared by the three examples, and it is kept once
+        Assertions.assertEquals(Set.of(cuba), commonTriples.keySet());
+        Assertions.assertEquals(new ArrayList<>(entries("Cuba", "label")), commonTriples.get(cuba));
+    }
+
+    @Test
+    void introduceVariablesSharesNodes() {
+        Example cuba = new Example(1, "Cuba", Example.CATEGORY_POSITIVE, 1);
+        Node cubaResource = NodeFactory.createURI("http://example.org/resource/Cuba");
+        Node havana = NodeFactory.createURI("http://example.org/resource/Havana");
+        Node label = NodeFactory.createURI("http://www.w3.org/2000/01/rdf-schema#label");
+        Node country = NodeFactory.createURI("http://example.org/ontology/country");
+
+        List<ExampleEntry<String, Triple>> commonTriples = new ArrayList<>();
+        commonTriples.add(new ExampleEntry<>("Cuba", new Triple(cubaResource, label, NodeFactory.createLiteral("Cuba"))));
+        // found while crawling from Havana, after Cuba already got a variable
+        commonTriples.add(new ExampleEntry<>(havana.getURI(), new Triple(havana, country, cubaResource)));
+
+        LearningSession session = new LearningSession(Set.of(cuba));
+        Assertions.assertEquals(1, queryLearner.introduceVariables(commonTriples, session));
+
+        Node sv0 = NodeFactory.createVariable("sv0");
+        Node x0 = NodeFactory.createVariable("x0");
+        Node x1 = NodeFactory.createVariable("x1");
+        // the resource of Cuba keeps its variable in both triples, so they are joined
+        Assertions.assertEquals(new Triple(x0, label, sv0), commonTriples.get(0).getValue());
+        Assertions.assertEquals(new Triple(x1, country, x0), commonTriples.get(1).getValue());
+        Assertions.assertEquals(List.of(commonTriples.get(0).getValue()), session.getTriplesBySelectedVariable().get(sv0.toString()));
+    }
+
+    @Test
+    void answersCoverPositiveExamplesOnly() {
+        Example cuba = new Example(1, "Cuba", Example.CATEGORY_POSITIVE, 1);
+        Example venezuela = new Example(2, "Venezuela", Example.CATEGORY_POSITIVE, 1);
+        Example malta = new Example(3, "Malta", Example.CATEGORY_NEGATIVE, 1);
+
+        Assertions.assertTrue(QueryLearner.isAnswer(Set.of(cuba, venezuela)));
+        Assertions.assertTrue(QueryLearner.isAnswer(Set.of(cuba)));
+        Assertions.assertFalse(QueryLearner.isAnswer(Set.of(cuba, malta)));
+        // a pattern matching no positive example is rejected, even when it avoids every negative one
+        Assertions.assertFalse(QueryLearner.isAnswer(Set.of()));
+        Assertions.assertFalse(QueryLearner.isAnswer(Set.of(malta)));
+    }
+
+    private Set<ExampleEntry<String, Triple>> entries(String example, String... predicates) {
+        Set<ExampleEntry<String, Triple>> entries = new LinkedHashSet<>();
+        for (String predicate : predicates)
+            entries.add(new ExampleEntry<>(example, new Triple(NodeFactory.createURI("http://example.org/resource/" + example), NodeFactory.createURI("http://example.org/ontology/" + predicate), NodeFactory.createLiteral(example))));
+        return entries;
+    }
+}
@@ -0,0 +1,85 @@
+package base.learners;
+
+import base.domain.Example;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+class SubsumptionPrunerTest {
+    // every combination places the examples, so only the refutations decide what is verified
+    private static final Set<Triple> TRIPLES = Set.of(new Triple(NodeFactory.createVariable("x0"),
+            NodeFactory.createURI("http://www.w3.org/2000/01/rdf-schema#label"), NodeFactory.createVariable("sv0")));
+
+    private final Example cuba = new Example(1, "Cuba", Example.CATEGORY_POSITIVE, 0);
+    private final Example venezuela = new Example(2, "Venezuela", Example.CATEGORY_POSITIVE, 0);
+    private final Example malta = new Example(3, "Malta", Example.CATEGORY_NEGATIVE, 0);
+    private final List<Example> examples = List.of(cuba, venezuela, malta);
+
+    @Test
+    void refutedExamplesAreNotVerifiedAgain() {
+        SubsumptionPruner pruner = new SubsumptionPruner(examples);
+        verify(pruner, 0b001, Set.of(cuba, malta));
+        verify(pruner, 0b010, Set.of(cuba, venezuela));
+
+        // each subset refuted an example, so the superset is only verified against the other ones
+        Assertions.assertEquals(List.of(cuba), pruner.examplesToVerify(0b011, TRIPLES));
+        Assertions.assertEquals(List.of(cuba, malta), pruner.examplesToVerify(0b101, TRIPLES));
+        Assertions.assertEquals(4, pruner.getVerifiedPatterns());
+        Assertions.assertEquals(3, pruner.getPrunedVerifications());
+    }
+
+    @Test
+    void combinationsWithoutExamplesAreSettled() {
+        SubsumptionPruner pruner = new SubsumptionPruner(examples);
+        verify(pruner, 0b001, Set.of(malta));
+        verify(pruner, 0b010, Set.of(cuba, venezuela, malta));
+
+        // every example is refuted, or the negative one is all that is left: nothing is sent to the endpoint
+        Assertions.assertEquals(Collections.emptyList(), pruner.examplesToVerify(0b011, TRIPLES));
+        Assertions.assertEquals(1, pruner.getPrunedPatterns());
+        Assertions.assertEquals(3, pruner.getPrunedVerifications());
+        Assertions.assertEquals(2, pruner.getVerifiedPatterns());
+    }
+
+    @Test
+    void combinationsWithoutPositiveExamplesAreSettled() {
+        SubsumptionPruner pruner = new SubsumptionPruner(examples);
+        verify(pruner, 0b001, Set.of(malta));
+        verify(pruner, 0b010, Set.of(cuba, malta));
+
+        Assertions.assertEquals(Collections.emptyList(), pruner.examplesToVerify(0b011, TRIPLES));
+        Assertions.assertEquals(1, pruner.getPrunedPatterns());
+    }
+
+    @Test
+    void onlyThePreviousLevelIsKept() {
+        SubsumptionPruner pruner = new SubsumptionPruner(examples);
+        verify(pruner, 0b001, Set.of(cuba, malta));
+        // the next level refutes nothing, so it records nothing
+        verify(pruner, 0b110, Set.of(cuba, venezuela, malta));
+
+        // the refutation of 0b001 is two levels below, and is not applied anymore
+        Assertions.assertEquals(examples, pruner.examplesToVerify(0b111, TRIPLES));
+        Assertions.assertEquals(0, pruner.getPrunedVerifications());
+    }
+
+    @Test
+    void skippedLevelsAreForgotten() {
+        SubsumptionPruner pruner = new SubsumptionPruner(examples);
+        verify(pruner, 0b001, Set.of(cuba, malta));
+
+        Assertions.assertEquals(examples, pruner.examplesToVerify(0b111, TRIPLES));
+    }
+
+    // verifies the combination against the examples the pruner returns, which cover the given ones
+    private void verify(SubsumptionPruner pruner, long combination, Set<Example> covered) {
+        List<Example> verified = pruner.examplesToVerify(combination, TRIPLES);
+        Assertions.assertFalse(verified.isEmpty());
+        pruner.record(combination, verified, covered);
+    }
+}
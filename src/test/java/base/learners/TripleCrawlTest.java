@@ -0,0 +1,70 @@
+package base.learners;
+
+import base.Application;
+import base.backends.QueryBackend;
+import base.domain.ExampleEntry;
+import base.utils.DeriveTriplesQueryExecutor;
+import base.utils.UtilsJena;
+import org.apache.jena.graph.Triple;
+import org.apache.jena.query.QueryParseException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+@SpringBootTest(classes = Application.class, properties = {
+        "sparqlear.sparql.candidateTriples.limit=5"
+})
+@ActiveProfiles("nodb")
+class TripleCrawlTest {
+    @Autowired
+    private TripleFinder tripleFinder;
+    @Autowired
+    private UtilsJena utilsJena;
+    @Autowired
+    private QueryBackend queryBackend;
+
+    @Test
+    void resumedCrawlFindsNewTriples() throws Exception {
+        TripleCrawl crawl = new TripleCrawl("Cuba", Optional.empty(), 0);
+        Set<ExampleEntry<String, Triple>> foundTriples = new HashSet<>();
+        Set<ExampleEntry<String, Triple>> batch;
+        int batches = 0;
+        do {
+            batch = tripleFinder.deriveCandidateTriples(crawl);
+            Assertions.assertTrue(batch.size() <= 5);
+            for (ExampleEntry<String, Triple> entry : batch)
+                Assertions.assertTrue(foundTriples.add(entry), "found again: " + entry);
+            // the fixture is small, so the crawl runs out of triples
+            Assertions.assertTrue(++batches < 100);
+        } while (!batch.isEmpty());
+
+        Assertions.assertTrue(batches > 2);
+        for (Triple triple : utilsJena.deriveTriples("Cuba", Optional.empty(), 1000, 0))
+            Assertions.assertTrue(foundTriples.contains(new ExampleEntry<>("Cuba", triple)), "missing: " + triple);
+    }
+
+    @Test
+    void derivationKeepsEveryRow() {
+        // each triple comes twice, the rows read are what a crawl resumes from
+        String query = "SELECT ?p ?o WHERE { { <http://example.org/resource/Cuba> ?p ?o } UNION { <http://example.org/resource/Cuba> ?p ?o } }";
+        List<Triple> rows = new DeriveTriplesQueryExecutor(queryBackend, query, "http://example.org/resource/Cuba", DeriveTriplesQueryExecutor.SUBJECT_SELECTOR).call();
+
+        Assertions.assertFalse(rows.isEmpty());
+        Assertions.assertEquals(2 * new HashSet<>(rows).size(), rows.size());
+    }
+
+    @Test
+    void derivationErrorsArePropagated() {
+        // an empty page would mark the role as read to the end
+        DeriveTriplesQueryExecutor executor = new DeriveTriplesQueryExecutor(queryBackend, "SELECT ?p ?o WHERE { 'Cuba ?p ?o }", "Cuba", DeriveTriplesQueryExecutor.SUBJECT_SELECTOR);
+
+        Assertions.assertThrows(QueryParseException.class, executor::call);
+    }
+}
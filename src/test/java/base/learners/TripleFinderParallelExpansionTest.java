@@ -0,0 +1,40 @@
+package base.learners;
+
+import base.Application;
+import base.domain.ExampleEntry;
+import org.apache.jena.graph.Triple;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+// the budget is cut in the middle of a level, so the order the concurrent derivations are queued in decides the triples found
+@SpringBootTest(classes = Application.class, properties = {
+        "sparqlear.sparql.candidateTriples.limit=12",
+        "sparqlear.tripleFinder.parallelExpansion=true"
+})
+@ActiveProfiles("nodb")
+class TripleFinderParallelExpansionTest {
+    private static final int RUNS = 20;
+    @Autowired
+    private TripleFinder tripleFinder;
+
+    @Test
+    void parallelExpansionIsReproducible() throws Exception {
+        for (String example : List.of("Cuba", "http://example.org/resource/Fidel")) {
+            List<ExampleEntry<String, Triple>> expected = derive(example);
+            Assertions.assertEquals(12, expected.size());
+            for (int i = 0; i < RUNS; i++)
+                Assertions.assertEquals(expected, derive(example), example);
+        }
+    }
+
+    private List<ExampleEntry<String, Triple>> derive(String example) throws Exception {
+        return new ArrayList<>(tripleFinder.deriveCandidateTriples(new TripleCrawl(example, Optional.empty(), 0)));
+    }
+}
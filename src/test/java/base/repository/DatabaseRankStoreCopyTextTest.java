@@ -0,0 +1,14 @@
+package base.repository;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+// the text sent through COPY, which needs no database
+class DatabaseRankStoreCopyTextTest {
+
+    @Test
+    void copyTextEscapesTheSeparators() {
+        Assertions.assertEquals("http://example.org/ontology/capital", DatabaseRankStore.copyText("http://example.org/ontology/capital"));
+        Assertions.assertEquals("a\\tb\\nc\\rd\\\\e", DatabaseRankStore.copyText("a\tb\nc\rd\\e"));
+    }
+}
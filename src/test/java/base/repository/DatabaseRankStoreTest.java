@@ -0,0 +1,130 @@
+package base.repository;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.support.PropertiesLoaderUtils;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.AbstractMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+// runs against the PostgreSQL database of application.properties, and is skipped when it can't be reached unless
+// sparqlear.test.database=required. The Property table and its sequence are shadowed by temporary ones and the
+// transaction is rolled back, so the database is left as it was.
+class DatabaseRankStoreTest {
+    private static final String ONTOLOGY = "http://example.org/ontology/";
+    private Connection connection;
+
+    @BeforeEach
+    void connect() throws IOException, SQLException {
+        Properties properties = PropertiesLoaderUtils.loadAllProperties("application.properties");
+        try {
+            connection = DriverManager.getConnection(properties.getProperty("spring.datasource.url"),
+                    properties.getProperty("spring.datasource.username"), properties.getProperty("spring.datasource.password"));
+        } catch (SQLException e) {
+            // run with -Dsparqlear.test.database=required where there is a database, so the tests can't be skipped
+            if ("required".equals(System.getProperty("sparqlear.test.database")))
+                throw e;
+            Assumptions.assumeTrue(false, "There is no database: " + e.getMessage());
+        }
+
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TEMPORARY TABLE property (id BIGINT PRIMARY KEY, label VARCHAR(2000), weight REAL)");
+            statement.execute("CREATE TEMPORARY SEQUENCE hibernate_sequence");
+        }
+    }
+
+    @AfterEach
+    void rollback() throws SQLException {
+        if (null == connection)
+            return;
+        connection.rollback();
+        connection.close();
+    }
+
+    @Test
+    void copyUpsertsTheRows() throws SQLException {
+        insert(ONTOLOGY + "capital", 0.1f);
+        DatabaseRankStore.createLabelIndex(connection);
+
+        // the last row of a label wins, and the labels are escaped for COPY
+        Assertions.assertEquals(4, DatabaseRankStore.copy(connection, rows(
+                ONTOLOGY + "capital", 0.8f, ONTOLOGY + "gender", 0.5f, ONTOLOGY + "gender", 0.6f, ONTOLOGY + "a\tb\\c", 0.4f)));
+
+        Assertions.assertEquals(Map.of(ONTOLOGY + "capital", 0.8f, ONTOLOGY + "gender", 0.6f, ONTOLOGY + "a\tb\\c", 0.4f), weights());
+    }
+
+    @Test
+    void batchUpsertsTheRows() throws SQLException {
+        insert(ONTOLOGY + "capital", 0.1f);
+        DatabaseRankStore.createLabelIndex(connection);
+
+        Assertions.assertEquals(3, DatabaseRankStore.batch(connection, rows(
+                ONTOLOGY + "capital", 0.8f, ONTOLOGY + "gender", 0.5f, ONTOLOGY + "gender", 0.6f), 2));
+
+        Assertions.assertEquals(Map.of(ONTOLOGY + "capital", 0.8f, ONTOLOGY + "gender", 0.6f), weights());
+    }
+
+    @Test
+    void repeatedLabelsFailTheIndexing() throws SQLException {
+        insert(ONTOLOGY + "capital", 0.1f);
+        insert(ONTOLOGY + "capital", 0.3f);
+        insert(ONTOLOGY + "gender", 0.5f);
+
+        SQLException e = Assertions.assertThrows(SQLException.class, () -> DatabaseRankStore.createLabelIndex(connection));
+        Assertions.assertTrue(e.getMessage().contains(ONTOLOGY + "capital"), e.getMessage());
+        Assertions.assertFalse(e.getMessage().contains(ONTOLOGY + "gender"), e.getMessage());
+        // nothing is removed
+        try (Statement statement = connection.createStatement(); ResultSet rows = statement.executeQuery("SELECT COUNT(*) FROM property")) {
+            rows.next();
+            Assertions.assertEquals(3, rows.getInt(1));
+        }
+    }
+
+    @Test
+    void labelIndexIsCreatedOnce() throws SQLException {
+        insert(ONTOLOGY + "gender", 0.5f);
+
+        DatabaseRankStore.createLabelIndex(connection);
+        DatabaseRankStore.createLabelIndex(connection);
+        Assertions.assertThrows(SQLException.class, () -> insert(ONTOLOGY + "gender", 0.7f));
+    }
+
+    private void insert(String label, float weight) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO property (id, label, weight) VALUES (nextval('hibernate_sequence'), ?, ?)")) {
+            statement.setString(1, label);
+            statement.setFloat(2, weight);
+            statement.executeUpdate();
+        }
+    }
+
+    private Map<String, Float> weights() throws SQLException {
+        Map<String, Float> weights = new HashMap<>();
+        try (Statement statement = connection.createStatement(); ResultSet rows = statement.executeQuery("SELECT label, weight FROM property")) {
+            while (rows.next())
+                Assertions.assertNull(weights.put(rows.getString(1), rows.getFloat(2)), "repeated label: " + rows.getString(1));
+        }
+        return weights;
+    }
+
+    // the rows as label, weight, label, weight...
+    private static Stream<Map.Entry<String, Float>> rows(Object... values) {
+        Stream.Builder<Map.Entry<String, Float>> rows = Stream.builder();
+        for (int i = 0; i < values.length; i += 2)
+            rows.add(new AbstractMap.SimpleImmutableEntry<>((String) values[i], (Float) values[i + 1]));
+        return rows.build();
+    }
+}
@@ -0,0 +1,138 @@
+package base.repository;
+
+import base.Application;
+import base.domain.PropertyRank;
+import base.learners.TripleFinder;
+import base.services.PropertiesService;
+import base.services.RankImportService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+// the rank is kept in a file, there is no database at all
+@SpringBootTest(classes = Application.class, properties = {
+        "sparqlear.verifyPredicatesRank=true",
+        "sparqlear.propertyRank.store=file"
+})
+@ActiveProfiles("nodb")
+class FileRankStoreTest {
+    private static final String ONTOLOGY = "http://example.org/ontology/";
+    private static Path directory;
+    @Autowired
+    private RankStore rankStore;
+    @Autowired
+    private RankImportService rankImportService;
+    @Autowired
+    private PropertiesService propertiesService;
+
+    @DynamicPropertySource
+    static void rankFile(DynamicPropertyRegistry registry) throws IOException {
+        directory = Files.createTempDirectory("sparqlear-rank");
+        // the rank is verified, so it must be there at startup
+        new PropertyRank.Builder().build().write(directory.resolve("rank.bin"));
+        registry.add("sparqlear.propertyRank.file", () -> directory.resolve("rank.bin").toString());
+    }
+
+    @AfterAll
+    static void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    void fileStoreIsSelected() {
+        Assertions.assertTrue(rankStore instanceof FileRankStore);
+    }
+
+    @Test
+    void importAndLoadRank() throws IOException {
+        Path ranking = directory.resolve("ranking.csv");
+        Files.write(ranking, Arrays.asList("property,weight", ONTOLOGY + "capital,0.8", ONTOLOGY + "gender,0.1"));
+        Assertions.assertEquals(2, rankImportService.importRanking(ranking));
+
+        // the weights computed from the dump are merged into the ones imported before
+        rankImportService.importWeights(Collections.singletonList("fixtures/countries.ttl"));
+        Files.write(ranking, Collections.singletonList(ONTOLOGY + "gender,0.2"));
+        rankImportService.importRanking(ranking);
+
+        propertiesService.loadProperties();
+        Assertions.assertEquals(7, propertiesService.getRank().size());
+        Assertions.assertEquals(0.2f, propertiesService.getRank().getWeight(ONTOLOGY + "gender"));
+        Assertions.assertEquals(1f, propertiesService.getRank().getWeight("http://www.w3.org/2000/01/rdf-schema#label"));
+        Assertions.assertEquals(Math.log(5) / Math.log(14), propertiesService.getRank().getWeight(ONTOLOGY + "capital"), 1e-6);
+    }
+
+    @Test
+    void unreadableRankFailsTheStartup() throws IOException {
+        Path corrupt = directory.resolve("corrupt.bin");
+        Files.write(corrupt, Collections.singletonList("not a rank"));
+
+        assertStartupFails("--sparqlear.propertyRank.store=file", "--sparqlear.propertyRank.file=" + corrupt);
+    }
+
+    @Test
+    void missingRankFailsTheStartup() {
+        assertStartupFails("--sparqlear.propertyRank.store=file", "--sparqlear.propertyRank.file=" + directory.resolve("missing.bin"));
+        // the database store without a database
+        assertStartupFails("--sparqlear.propertyRank.store=database");
+    }
+
+    @Test
+    void rankImportedAtStartupCreatesTheFile() throws IOException {
+        Path rank = directory.resolve("imported.bin");
+        Path ranking = directory.resolve("imported.csv");
+        Files.write(ranking, Collections.singletonList(ONTOLOGY + "capital,0.9"));
+
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                .profiles("nodb")
+                .web(WebApplicationType.NONE)
+                .run("--sparqlear.verifyPredicatesRank=true", "--sparqlear.propertyRank.store=file",
+                        "--sparqlear.propertyRank.file=" + rank, "--sparqlear.rankImport.file=" + ranking)) {
+            Assertions.assertEquals(0.9f, context.getBean(PropertiesService.class).getRank().getWeight(ONTOLOGY + "capital"));
+        }
+    }
+
+    @Test
+    void importedRankIsLoadedForTheBestFirstCrawl() throws IOException {
+        Path rank = directory.resolve("bestFirst.bin");
+        new PropertyRank.Builder().add(ONTOLOGY + "capital", 0.1f).build().write(rank);
+        Path ranking = directory.resolve("bestFirst.csv");
+        Files.write(ranking, Collections.singletonList(ONTOLOGY + "capital,0.9"));
+
+        // the rank is not verified, but the crawl is ordered by it
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                .profiles("nodb")
+                .web(WebApplicationType.NONE)
+                .run("--sparqlear.tripleFinder.frontier=" + TripleFinder.FRONTIER_BEST_FIRST, "--sparqlear.propertyRank.store=file",
+                        "--sparqlear.propertyRank.file=" + rank, "--sparqlear.rankImport.file=" + ranking)) {
+            Assertions.assertEquals(0.9f, context.getBean(PropertiesService.class).getRank().getWeight(ONTOLOGY + "capital"));
+        }
+    }
+
+    private static void assertStartupFails(String... args) {
+        SpringApplicationBuilder application = new SpringApplicationBuilder(Application.class)
+                .profiles("nodb")
+                .web(WebApplicationType.NONE);
+        String[] arguments = Stream.concat(Stream.of("--sparqlear.verifyPredicatesRank=true"), Arrays.stream(args)).toArray(String[]::new);
+        Exception e = Assertions.assertThrows(Exception.class, () -> application.run(arguments).close());
+        Assertions.assertTrue(NestedExceptionUtils.getRootCause(e) instanceof IOException, e::toString);
+    }
+}
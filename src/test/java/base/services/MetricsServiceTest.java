@@ -0,0 +1,119 @@
+package base.services;
+
+import base.backends.LocalQueryBackend;
+import base.backends.QueryBackend;
+import base.utils.DeriveTriplesQueryExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.jena.graph.Triple;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+// the meters are read back from a simple registry, with the cache in a directory of its own
+class MetricsServiceTest {
+    private static final String CUBA = "http://example.org/resource/Cuba";
+
+    private Path directory;
+    private AnnotationConfigApplicationContext context;
+    private MetricsService metricsService;
+    private MeterRegistry meterRegistry;
+
+    @BeforeEach
+    void start() throws IOException {
+        directory = Files.createTempDirectory("sparqlear-cache");
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", Map.of(
+                "sparqlear.cache.enabled", "true",
+                "sparqlear.cache.directory", directory.toString(),
+                "sparqlear.cache.ttlMinutes", "60",
+                "sparqlear.cache.maxEntries", "10",
+                "sparqlear.sparql.backend", "local",
+                "sparqlear.sparql.local.dump", "fixtures/countries.ttl",
+                "sparqlear.sparql.local.tdb2", "")));
+        context.registerBean(SimpleMeterRegistry.class);
+        context.register(TriplesCacheService.class, MetricsService.class, LocalQueryBackend.class);
+        context.refresh();
+        metricsService = context.getBean(MetricsService.class);
+        meterRegistry = context.getBean(MeterRegistry.class);
+    }
+
+    @AfterEach
+    void close() throws IOException {
+        context.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    void stagesAreTimedByName() {
+        Timer.Sample sample = metricsService.startStage();
+        metricsService.stopStage(sample, MetricsService.STAGE_DERIVATION);
+        sample = metricsService.startStage();
+        metricsService.stopStage(sample, MetricsService.STAGE_DERIVATION);
+        sample = metricsService.startStage();
+        metricsService.stopStage(sample, MetricsService.STAGE_SEARCH);
+
+        Assertions.assertEquals(2, meterRegistry.get("sparqlear.learn.stage").tag("stage", MetricsService.STAGE_DERIVATION).timer().count());
+        Assertions.assertEquals(1, meterRegistry.get("sparqlear.learn.stage").tag("stage", MetricsService.STAGE_SEARCH).timer().count());
+        Assertions.assertEquals(2, meterRegistry.get("sparqlear.learn.stage").timers().size());
+    }
+
+    @Test
+    void queriesAndRowsAreCountedByType() {
+        metricsService.countQuery(MetricsService.QUERY_ASK);
+        metricsService.countQuery(MetricsService.QUERY_ASK);
+        metricsService.countQuery(MetricsService.QUERY_VALUES);
+        metricsService.countRows(MetricsService.QUERY_VALUES, 3);
+        metricsService.countRows(MetricsService.QUERY_VALUES, 5);
+
+        Assertions.assertEquals(2, meterRegistry.get("sparqlear.sparql.queries").tag("type", MetricsService.QUERY_ASK).counter().count());
+        Assertions.assertEquals(1, meterRegistry.get("sparqlear.sparql.queries").tag("type", MetricsService.QUERY_VALUES).counter().count());
+        Assertions.assertEquals(2, meterRegistry.get("sparqlear.sparql.rows").tag("type", MetricsService.QUERY_VALUES).summary().count());
+        Assertions.assertEquals(8, meterRegistry.get("sparqlear.sparql.rows").tag("type", MetricsService.QUERY_VALUES).summary().totalAmount());
+    }
+
+    @Test
+    void combinationsAreCountedByOutcome() {
+        metricsService.countCombinations(MetricsService.COMBINATION_VERIFIED, 1);
+        metricsService.countCombinations(MetricsService.COMBINATION_PRUNED, 4);
+        metricsService.countCombinations(MetricsService.COMBINATION_PRUNED, 1);
+
+        Assertions.assertEquals(1, meterRegistry.get("sparqlear.bgp.combinations").tag("outcome", MetricsService.COMBINATION_VERIFIED).counter().count());
+        Assertions.assertEquals(5, meterRegistry.get("sparqlear.bgp.combinations").tag("outcome", MetricsService.COMBINATION_PRUNED).counter().count());
+        Assertions.assertNull(meterRegistry.find("sparqlear.bgp.combinations").tag("outcome", MetricsService.COMBINATION_DISCARDED).counter());
+    }
+
+    @Test
+    void cacheHitsAreNotCountedAsQueries() {
+        QueryBackend queryBackend = context.getBean(QueryBackend.class);
+        TriplesCacheService triplesCacheService = context.getBean(TriplesCacheService.class);
+        String query = "SELECT ?p ?o WHERE { <" + CUBA + "> ?p ?o }";
+        String key = TriplesCacheService.key(queryBackend.getName(), Optional.empty(), CUBA, DeriveTriplesQueryExecutor.SUBJECT_SELECTOR, 10, 0);
+
+        List<Triple> sent = new DeriveTriplesQueryExecutor(queryBackend, query, CUBA, DeriveTriplesQueryExecutor.SUBJECT_SELECTOR, triplesCacheService, key, metricsService).call();
+        List<Triple> cached = new DeriveTriplesQueryExecutor(queryBackend, query, CUBA, DeriveTriplesQueryExecutor.SUBJECT_SELECTOR, triplesCacheService, key, metricsService).call();
+
+        Assertions.assertFalse(sent.isEmpty());
+        Assertions.assertEquals(sent, cached);
+        Assertions.assertEquals(1, meterRegistry.get("sparqlear.sparql.queries").tag("type", MetricsService.QUERY_NEIGHBOURHOOD).counter().count());
+        Assertions.assertEquals(1, meterRegistry.get("sparqlear.sparql.rows").tag("type", MetricsService.QUERY_NEIGHBOURHOOD).summary().count());
+        Assertions.assertEquals(sent.size(), meterRegistry.get("sparqlear.sparql.rows").tag("type", MetricsService.QUERY_NEIGHBOURHOOD).summary().totalAmount());
+        Assertions.assertEquals(1, meterRegistry.get("sparqlear.cache.requests").tag("result", "hit").functionCounter().count());
+        Assertions.assertEquals(1, meterRegistry.get("sparqlear.cache.requests").tag("result", "miss").functionCounter().count());
+    }
+}
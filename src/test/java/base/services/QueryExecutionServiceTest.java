@@ -0,0 +1,88 @@
+package base.services;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+// the service alone in a context of its own, with one query in flight and one pending at most
+class QueryExecutionServiceTest {
+    private AnnotationConfigApplicationContext context;
+    private QueryExecutionService queryExecutionService;
+
+    @BeforeEach
+    void start() {
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", Map.of(
+                "sparqlear.sparql.maxConcurrentQueries", "1",
+                "sparqlear.sparql.maxPendingQueries", "1")));
+        context.register(QueryExecutionService.class);
+        context.refresh();
+        queryExecutionService = context.getBean(QueryExecutionService.class);
+    }
+
+    @AfterEach
+    void close() {
+        context.close();
+    }
+
+    @Test
+    void submitBlocksOnceTheBoundIsReached() throws Exception {
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Integer> inFlight = queryExecutionService.submit(() -> {
+            running.countDown();
+            release.await();
+            return 1;
+        });
+        Assertions.assertTrue(running.await(10, TimeUnit.SECONDS));
+        CompletableFuture<Integer> pending = queryExecutionService.submit(() -> 2);
+
+        CompletableFuture<CompletableFuture<Integer>> blocked = CompletableFuture.supplyAsync(() -> queryExecutionService.submit(() -> 3));
+        Thread.sleep(200);
+        Assertions.assertFalse(blocked.isDone());
+
+        release.countDown();
+        Assertions.assertEquals(1, inFlight.get(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(2, pending.get(10, TimeUnit.SECONDS));
+        Assertions.assertEquals(3, blocked.get(10, TimeUnit.SECONDS).get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void poolIsShutDownWithTheContext() throws Exception {
+        Assertions.assertEquals(1, queryExecutionService.submit(() -> 1).get(10, TimeUnit.SECONDS));
+
+        context.close();
+        CompletableFuture<Integer> rejected = queryExecutionService.submit(() -> 1);
+        CompletionException e = Assertions.assertThrows(CompletionException.class, rejected::join);
+        Assertions.assertTrue(e.getCause() instanceof RejectedExecutionException, e::toString);
+    }
+
+    @Test
+    void queryContextIsPropagated() throws Exception {
+        QueryContext queryContext = new QueryContext(0);
+        QueryContext previous = QueryContext.attach(queryContext);
+        try {
+            Assertions.assertSame(queryContext, queryExecutionService.submit(QueryContext::current).get(10, TimeUnit.SECONDS));
+
+            // a cancelled context keeps its tasks from running
+            queryContext.cancel();
+            Assertions.assertThrows(CancellationException.class, queryExecutionService.submit(() -> 1)::join);
+        } finally {
+            QueryContext.attach(previous);
+        }
+
+        // the pool thread does not keep the context of the previous task
+        Assertions.assertNull(queryExecutionService.submit(QueryContext::current).get(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,71 @@
+package base.services;
+
+import base.Application;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+@SpringBootTest(classes = Application.class)
+@ActiveProfiles("nodb")
+class RankImportServiceTest {
+    private static final String ONTOLOGY = "http://example.org/ontology/";
+    private static final String LABEL = "http://www.w3.org/2000/01/rdf-schema#label";
+    @Autowired
+    private RankImportService rankImportService;
+
+    @Test
+    void weighPredicatesByFrequency() throws IOException {
+        Map<String, Float> weights = rankImportService.computeWeights(Collections.singletonList("fixtures/countries.ttl"));
+
+        Assertions.assertEquals(7, weights.size());
+        // 13 labels, 4 capitals and 2 genders
+        Assertions.assertEquals(1f, weights.get(LABEL));
+        Assertions.assertEquals(Math.log(5) / Math.log(14), weights.get(ONTOLOGY + "capital"), 1e-6);
+        Assertions.assertEquals(Math.log(3) / Math.log(14), weights.get(ONTOLOGY + "gender"), 1e-6);
+    }
+
+    @Test
+    void weighSeveralDumps() throws IOException {
+        // the named graphs hold the countries of the default graph again
+        Map<String, Float> weights = rankImportService.computeWeights(Arrays.asList("fixtures/countries.ttl", "fixtures/countries.trig"));
+
+        Assertions.assertEquals(1f, weights.get(LABEL));
+        Assertions.assertTrue(weights.get(ONTOLOGY + "capital") > weights.get(ONTOLOGY + "gender"));
+        Assertions.assertTrue(weights.values().stream().allMatch(weight -> (weight > 0) && (weight <= 1)));
+    }
+
+    @Test
+    void parseRankingRows() {
+        Assertions.assertEquals(new AbstractMap.SimpleImmutableEntry<>(ONTOLOGY + "capital", 0.8f),
+                RankImportService.parseRow(ONTOLOGY + "capital\t0.8", '\t'));
+        Assertions.assertEquals(new AbstractMap.SimpleImmutableEntry<>(ONTOLOGY + "capital", 0.8f),
+                RankImportService.parseRow("<" + ONTOLOGY + "capital> \t 0.8", '\t'));
+        Assertions.assertEquals(new AbstractMap.SimpleImmutableEntry<>(ONTOLOGY + "a,\"b\"", 0.5f),
+                RankImportService.parseRow("\"" + ONTOLOGY + "a,\"\"b\"\"\",0.5", ','));
+
+        Assertions.assertNull(RankImportService.parseRow("property\tweight", '\t'));
+        Assertions.assertNull(RankImportService.parseRow(ONTOLOGY + "capital", '\t'));
+        Assertions.assertNull(RankImportService.parseRow(ONTOLOGY + "capital\tNaN", '\t'));
+    }
+
+    @Test
+    void importWithoutDatabase() throws IOException {
+        Path file = Files.createTempFile("ranking", ".tsv");
+        try {
+            Files.write(file, Arrays.asList("property\tweight", ONTOLOGY + "capital\t0.8"));
+            Assertions.assertThrows(IOException.class, () -> rankImportService.importRanking(file));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package base.services;
+
+import base.Application;
+import base.backends.QueryBackend;
+import base.utils.DerivationCursor;
+import base.utils.DeriveTriplesQueryExecutor;
+import base.utils.UtilsJena;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// the cache is kept in a directory of its own, with a bound low enough to be evicted
+@SpringBootTest(classes = Application.class, properties = {
+        "sparqlear.cache.enabled=true",
+        "sparqlear.cache.ttlMinutes=60",
+        "sparqlear.cache.maxEntries=10"
+})
+@ActiveProfiles("nodb")
+class TriplesCacheServiceTest {
+    private static final String RESOURCE = "http://example.org/resource/";
+    private static Path directory;
+    @Autowired
+    private TriplesCacheService triplesCacheService;
+    @Autowired
+    private UtilsJena utilsJena;
+    @Autowired
+    private QueryBackend queryBackend;
+    @Autowired
+    private MetricsService metricsService;
+
+    @DynamicPropertySource
+    static void cacheDirectory(DynamicPropertyRegistry registry) throws IOException {
+        directory = Files.createTempDirectory("sparqlear-cache");
+        registry.add("sparqlear.cache.directory", directory::toString);
+    }
+
+    @AfterAll
+    static void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+    @Test
+    void keysAreHashedByEveryPart() {
+        String key = TriplesCacheService.key("local", Optional.empty(), "Cuba", DeriveTriplesQueryExecutor.SUBJECT_SELECTOR, 10, 0);
+
+        Assertions.assertEquals(triplesCacheService.entryPath(key),
+                triplesCacheService.entryPath(TriplesCacheService.key("local", Optional.empty(), "Cuba", DeriveTriplesQueryExecutor.SUBJECT_SELECTOR, 10, 0)));
+        Assertions.assertTrue(triplesCacheService.entryPath(key).getFileName().toString().matches("[0-9a-f]{64}\\.trdf"));
+        for (String other : List.of(
+                TriplesCacheService.key("remote", Optional.empty(), "Cuba", DeriveTriplesQueryExecutor.SUBJECT_SELECTOR, 10, 0),
+                TriplesCacheService.key("local", Optional.of("<http://example.org/graph>"), "Cuba", DeriveTriplesQueryExecutor.SUBJECT_SELECTOR, 10, 0),
+                TriplesCacheService.key("local", Optional.empty(), "Malta", DeriveTriplesQueryExecutor.SUBJECT_SELECTOR, 10, 0),
+                TriplesCacheService.key("local", Optional.empty(), "Cuba", DeriveTriplesQueryExecutor.OBJECT_SELECTOR, 10, 0),
+                TriplesCacheService.key("local", Optional.empty(), "Cuba", DeriveTriplesQueryExecutor.SUBJECT_SELECTOR, 20, 0),
+                TriplesCacheService.key("local", Optional.empty(), "Cuba", DeriveTriplesQueryExecutor.SUBJECT_SELECTOR, 10, 10)))
+            Assertions.assertNotEquals(triplesCacheService.entryPath(key), triplesCacheService.entryPath(other), other);
+    }
+
+    @Test
+    void entriesAreReplacedAtOnce() throws IOException {
+        String key = TriplesCacheService.key("local", Optional.empty(), "Replaced", DeriveTriplesQueryExecutor.SUBJECT_SELECTOR, 10, 0);
+        triplesCacheService.put(key, triples("Replaced", 3));
+        int entries = triplesCacheService.getEntries();
+        triplesCacheService.put(key, triples("Replaced", 2));
+
+        // the entry is written in a temporary file moved over the old one, and no temporary file is left
+        Assertions.assertEquals(entries, triplesCacheService.getEntries());
+        Assertions.assertEquals(Optional.of(triples("Replaced", 2)), triplesCacheService.get(key));
+        try (Stream<Path> files = Files.list(directory)) {
+            Assertions.assertEquals(List.of(), files.filter(file -> !file.toString().endsWith(".trdf")).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    void hitsAndMissesAreCounted() {
+        String key = TriplesCacheService.key("local", Optional.empty(), "Counted", DeriveTriplesQueryExecutor.SUBJECT_SELECTOR, 10, 0);
+        long hits = triplesCacheService.getHits();
+        long misses = triplesCacheService.getMisses();
+
+        Assertions.assertEquals(Optional.empty(), triplesCacheService.get(key));
+        triplesCacheService.put(key, triples("Counted", 1));
+        Assertions.assertEquals(Optional.of(triples("Counted", 1)), triplesCacheService.get(key));
+
+        Assertions.assertEquals(hits + 1, triplesCacheService.getHits());
+        Assertions.assertEquals(misses + 1, triplesCacheService.getMisses());
+    }
+
+    @Test
+    void expiredEntriesAreRemoved() throws IOException {
+        String key = TriplesCacheService.key("local", Optional.empty(), "Expired", DeriveTriplesQueryExecutor.SUBJECT_SELECTOR, 10, 0);
+        triplesCacheService.put(key, triples("Expired", 1));
+        Path entry = triplesCacheService.entryPath(key);
+        Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.MINUTES.toMillis(61)));
+        int entries = triplesCacheService.getEntries();
+        long misses = triplesCacheService.getMisses();
+
+        Assertions.assertEquals(Optional.empty(), triplesCacheService.get(key));
+        Assertions.assertFalse(Files.exists(entry));
+        Assertions.assertEquals(entries - 1, triplesCacheService.getEntries());
+        Assertions.assertEquals(misses + 1, triplesCacheService.getMisses());
+    }
+
+    @Test
+    void oldestEntriesAreEvicted() throws IOException {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i <= 10; i++) {
+            String key = TriplesCacheService.key("local", Optional.empty(), "Evicted" + i, DeriveTriplesQueryExecutor.SUBJECT_SELECTOR, 10, 0);
+            triplesCacheService.put(key, triples("Evicted" + i, 1));
+            // older than the entries of the other tests, and the first ones the oldest
+            Path entry = triplesCacheService.entryPath(key);
+            if (Files.exists(entry))
+                Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(100 - i)));
+            keys.add(key);
+        }
+
+        Assertions.assertTrue(triplesCacheService.getEntries() <= 10);
+        try (Stream<Path> files = Files.list(directory)) {
+            Assertions.assertEquals(triplesCacheService.getEntries(), files.filter(file -> file.toString().endsWith(".trdf")).count());
+        }
+        Assertions.assertFalse(Files.exists(triplesCacheService.entryPath(keys.get(0))));
+        Assertions.assertTrue(Files.exists(triplesCacheService.entryPath(keys.get(10))));
+    }
+
+    @Test
+    void cachedPagesResumeAtTheSamePosition() throws Exception {
+        // the rows repeating a triple are cached too, as the cursor moves past them
+        String query = "SELECT ?p ?o WHERE { { <" + RESOURCE + "Cuba> ?p ?o } UNION { <" + RESOURCE + "Cuba> ?p ?o } }";
+        String key = TriplesCacheService.key("local", Optional.empty(), "Union", DeriveTriplesQueryExecutor.SUBJECT_SELECTOR, 100, 0);
+        List<Triple> rows = new DeriveTriplesQueryExecutor(queryBackend, query, RESOURCE + "Cuba", DeriveTriplesQueryExecutor.SUBJECT_SELECTOR, triplesCacheService, key, metricsService).call();
+        Assertions.assertEquals(Optional.of(rows), triplesCacheService.get(key));
+
+        List<List<Integer>> offsets = crawl();
+        Assertions.assertTrue(offsets.size() > 2);
+        long hits = triplesCacheService.getHits();
+        Assertions.assertEquals(offsets, crawl());
+        Assertions.assertTrue(triplesCacheService.getHits() > hits);
+    }
+
+    // the offsets of the cursor after each page of a crawl of Cuba
+    private List<List<Integer>> crawl() throws Exception {
+        DerivationCursor cursor = new DerivationCursor(RESOURCE + "Cuba", Optional.empty(), 0);
+        List<List<Integer>> offsets = new ArrayList<>();
+        while (!cursor.isExhausted()) {
+            utilsJena.deriveTriplesAsync(cursor, 2).get();
+            offsets.add(List.of(cursor.getOffset(DeriveTriplesQueryExecutor.SUBJECT_SELECTOR), cursor.getOffset(DeriveTriplesQueryExecutor.OBJECT_SELECTOR)));
+        }
+        return offsets;
+    }
+
+    private static List<Triple> triples(String example, int size) {
+        List<Triple> triples = new ArrayList<>();
+        for (int i = 0; i < size; i++)
+            triples.add(new Triple(NodeFactory.createURI(RESOURCE + example), NodeFactory.createURI(RESOURCE + "p" + i), NodeFactory.createLiteral(example)));
+        return triples;
+    }
+}
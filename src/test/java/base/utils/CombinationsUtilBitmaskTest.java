@@ -0,0 +1,36 @@
+package base.utils;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PrimitiveIterator;
+
+class CombinationsUtilBitmaskTest {
+
+    @Test
+    void combinations() {
+        List<Long> results = new ArrayList<>();
+        CombinationsUtil.combinations(4, 2).forEachRemaining((long combination) -> results.add(combination));
+        // subsets of {0, 1, 2, 3} with at least two elements, smaller subsets first
+        List<Long> expected = List.of(0b0011L, 0b0101L, 0b0110L, 0b1001L, 0b1010L, 0b1100L, 0b0111L, 0b1011L, 0b1101L, 0b1110L, 0b1111L);
+
+        Assertions.assertEquals(expected, results);
+    }
+
+    @Test
+    void combinationsCount() {
+        int n = 20;
+        long count = 0;
+        PrimitiveIterator.OfLong combinations = CombinationsUtil.combinations(n, 1);
+        while (combinations.hasNext()) {
+            combinations.nextLong();
+            count++;
+        }
+
+        Assertions.assertEquals((1L << n) - 1, count);
+        Assertions.assertFalse(CombinationsUtil.combinations(3, 4).hasNext());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> CombinationsUtil.combinations(CombinationsUtil.MAX_ELEMENTS + 1, 1));
+    }
+}
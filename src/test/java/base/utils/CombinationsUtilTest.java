@@ -12,6 +12,7 @@ import java.util.List;
 class CombinationsUtilTest {
 
     @Test
+    @SuppressWarnings("deprecation")
     void generateCombinations() {
         List<List<String>> results = CombinationsUtil.generateCombinations(5);
         List<List<String>> expected = new ArrayList<>();
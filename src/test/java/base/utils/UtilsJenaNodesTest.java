@@ -0,0 +1,22 @@
+package base.utils;
+
+import org.apache.jena.graph.NodeFactory;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class UtilsJenaNodesTest {
+
+    @Test
+    void getCanonicalExample() {
+        Assertions.assertEquals("http://example.org/resource/Cuba", UtilsJena.getCanonicalExample("<http://example.org/resource/Cuba>"));
+        Assertions.assertEquals("Cuba", UtilsJena.getCanonicalExample("\"'Cuba'\""));
+        Assertions.assertEquals("Cuba", UtilsJena.getCanonicalExample("Cuba"));
+    }
+
+    @Test
+    void isSelectedVariable() {
+        Assertions.assertTrue(UtilsJena.isSelectedVariable(NodeFactory.createVariable(UtilsJena.SELECTED_VARIABLE_PATTERN + 1)));
+        Assertions.assertFalse(UtilsJena.isSelectedVariable(NodeFactory.createVariable("x1")));
+        Assertions.assertFalse(UtilsJena.isSelectedVariable(NodeFactory.createURI("http://example.org/resource/Sverige_sv")));
+    }
+}
@@ -0,0 +1,64 @@
+package base.utils;
+
+import base.Application;
+import base.domain.Example;
+import org.apache.jena.graph.Node;
+import org.apache.jena.graph.NodeFactory;
+import org.apache.jena.graph.Triple;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// the ASK and VALUES verifications must cover the same examples, whichever sparqlear.sparql.verification.batched selects
+@SpringBootTest(classes = Application.class)
+@ActiveProfiles("nodb")
+class VerificationModesTest {
+    private static final String ONTOLOGY = "http://example.org/ontology/";
+    private static final Node LABEL = NodeFactory.createURI("http://www.w3.org/2000/01/rdf-schema#label");
+    private static final Node CAPITAL = NodeFactory.createURI(ONTOLOGY + "capital");
+    private static final Node X0 = NodeFactory.createVariable("x0");
+    private static final Node X1 = NodeFactory.createVariable("x1");
+    private static final Node SV0 = NodeFactory.createVariable("sv0");
+    private static final Node SV1 = NodeFactory.createVariable("sv1");
+
+    private final List<Example> examples = List.of(
+            new Example(1, "Cuba", Example.CATEGORY_POSITIVE, 0),
+            new Example(1, "Havana", Example.CATEGORY_POSITIVE, 1),
+            new Example(2, "Malta", Example.CATEGORY_NEGATIVE, 0),
+            new Example(3, "Love", Example.CATEGORY_NEGATIVE, 0),
+            new Example(3, "Rome", Example.CATEGORY_NEGATIVE, 1));
+    @Autowired
+    private UtilsJena utilsJena;
+
+    @Test
+    void countriesWithCapital() {
+        Set<Example> covered = assertSameCoveredExamples(pattern(new Triple(X0, LABEL, SV0), new Triple(X0, CAPITAL, X1), new Triple(X1, LABEL, SV1)));
+
+        Assertions.assertEquals(Set.of(examples.get(0), examples.get(1), examples.get(4)), covered);
+    }
+
+    @Test
+    void selectedVariableLeftInPlace() {
+        // the ASK query only places the capital in the last triple, the first one is matched by any country and capital
+        Set<Example> covered = assertSameCoveredExamples(pattern(new Triple(SV0, CAPITAL, SV1), new Triple(X1, LABEL, SV1)));
+
+        Assertions.assertEquals(Set.of(examples.get(1), examples.get(4)), covered);
+    }
+
+    private Set<Example> assertSameCoveredExamples(Set<Triple> triples) {
+        Set<Example> asked = utilsJena.coveredExamplesAsked(triples, examples, Collections.emptyList());
+        Assertions.assertEquals(asked, utilsJena.coveredExamplesBatched(triples, examples, Collections.emptyList()));
+        return asked;
+    }
+
+    private static Set<Triple> pattern(Triple... triples) {
+        return new LinkedHashSet<>(List.of(triples));
+    }
+}